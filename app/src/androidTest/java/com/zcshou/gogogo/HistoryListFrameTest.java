@@ -0,0 +1,153 @@
+package com.zcshou.gogogo;
+
+import android.app.Instrumentation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+import android.widget.SearchView;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.zcshou.database.DataBaseHistoryLocation;
+import com.zcshou.database.HistoryRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在历史记录页面的搜索框中逐字输入、再逐字删除，统计期间每一帧的耗时
+ * <p>
+ * 结果通过 Instrumentation 状态和日志输出（tag: HistoryListFrame），用于比较列表实现的改动前后。
+ * 这是基准测试，只断言记录到了帧，不设耗时阈值，是否变慢需要比较输出的分位数。
+ * <p>
+ * 记录写入单独的测试数据库，用户的定位历史不会被覆盖或删除，测试结束后删除测试数据库
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryListFrameTest {
+    private static final String TAG = "HistoryListFrame";
+    private static final String NAME_PREFIX = "FrameBench";
+    private static final int ROW_COUNT = 2000;
+    private static final String QUERY = NAME_PREFIX + " 123";
+    private static final long KEY_INTERVAL = 150;      /* 两次按键的间隔，单位 ms */
+    private static final String LOCATION_DB_NAME = "FrameBenchLocation.db";
+    private static final String SEARCH_DB_NAME = "FrameBenchSearch.db";
+
+    private final Instrumentation mInstrumentation = InstrumentationRegistry.getInstrumentation();
+    private HistoryRepository mRepository;
+    private CountDownLatch mDone;
+
+    @Before
+    public void seedHistory() throws InterruptedException {
+        Context context = mInstrumentation.getTargetContext();
+        // 删除上次中断时残留的测试数据库
+        context.deleteDatabase(LOCATION_DB_NAME);
+        context.deleteDatabase(SEARCH_DB_NAME);
+        HistoryRepository.setTestDatabases(context, LOCATION_DB_NAME, SEARCH_DB_NAME);
+        mRepository = HistoryRepository.getInstance(context);
+        long now = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < ROW_COUNT; i++) {
+            // 坐标各不相同，避免写入时被合并
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, NAME_PREFIX + " " + i);
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, 116.0 + i * 1e-4);
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, 39.9);
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP, now - i);
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, 116.0065 + i * 1e-4);
+            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, 39.906);
+            mRepository.saveLocation(contentValues);
+        }
+        // 仓库按提交顺序执行，读到结果时前面的写入都已完成
+        awaitLocations(() -> mRepository.loadLocations(null, 1, rows -> mDone.countDown()));
+    }
+
+    @After
+    public void removeHistory() {
+        HistoryRepository.clearTestDatabases();
+        Context context = mInstrumentation.getTargetContext();
+        context.deleteDatabase(LOCATION_DB_NAME);
+        context.deleteDatabase(SEARCH_DB_NAME);
+    }
+
+    private void awaitLocations(Runnable request) throws InterruptedException {
+        mDone = new CountDownLatch(1);
+        request.run();
+        assertTrue(mDone.await(60, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void typeInSearchView() throws InterruptedException {
+        List<Long> frameNanos = Collections.synchronizedList(new ArrayList<>());
+        HandlerThread metricsThread = new HandlerThread(TAG);
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener listener =
+                (window, frameMetrics, dropCount) -> frameNanos.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+
+        try (ActivityScenario<HistoryActivity> scenario = ActivityScenario.launch(HistoryActivity.class)) {
+            // 等待第一页显示
+            Thread.sleep(1000);
+            mInstrumentation.waitForIdleSync();
+            scenario.onActivity(activity ->
+                    activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper())));
+
+            for (int i = 1; i <= QUERY.length(); i++) {
+                typeQuery(scenario, QUERY.substring(0, i));
+            }
+            for (int i = QUERY.length() - 1; i >= 0; i--) {
+                typeQuery(scenario, QUERY.substring(0, i));
+            }
+
+            scenario.onActivity(activity -> activity.getWindow().removeOnFrameMetricsAvailableListener(listener));
+        } finally {
+            metricsThread.quitSafely();
+        }
+
+        List<Long> frames;
+        synchronized (frameNanos) {
+            frames = new ArrayList<>(frameNanos);
+        }
+        assertFalse(frames.isEmpty());
+        Collections.sort(frames);
+
+        Bundle results = new Bundle();
+        results.putInt("frameCount", frames.size());
+        results.putDouble("frameP50Ms", percentile(frames, 50));
+        results.putDouble("frameP90Ms", percentile(frames, 90));
+        results.putDouble("frameP99Ms", percentile(frames, 99));
+        results.putDouble("frameMaxMs", frames.get(frames.size() - 1) / 1e6);
+        mInstrumentation.sendStatus(0, results);
+        Log.i(TAG, String.format(Locale.US, "frames=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                frames.size(), results.getDouble("frameP50Ms"), results.getDouble("frameP90Ms"),
+                results.getDouble("frameP99Ms"), results.getDouble("frameMaxMs")));
+    }
+
+    private void typeQuery(ActivityScenario<HistoryActivity> scenario, String query) throws InterruptedException {
+        scenario.onActivity(activity -> ((SearchView) activity.findViewById(R.id.searchView)).setQuery(query, false));
+        // 搜索和列表比较都在后台线程中进行，留出时间让结果显示出来
+        Thread.sleep(KEY_INTERVAL);
+        mInstrumentation.waitForIdleSync();
+    }
+
+    // frames 已排序，单位 ns，返回 ms
+    private static double percentile(List<Long> frames, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * frames.size()) - 1;
+        return frames.get(Math.max(index, 0)) / 1e6;
+    }
+}
@@ -2,10 +2,13 @@ package com.zcshou.database;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.elvishew.xlog.XLog;
+import com.zcshou.core.GeoHash;
+import com.zcshou.core.SearchText;
 
 public class DataBaseHistoryLocation extends SQLiteOpenHelper {
     public static final String TABLE_NAME = "HistoryLocation";
@@ -16,41 +19,151 @@ public class DataBaseHistoryLocation extends SQLiteOpenHelper {
     public static final String DB_COLUMN_TIMESTAMP = "DB_COLUMN_TIMESTAMP";
     public static final String DB_COLUMN_LONGITUDE_CUSTOM = "DB_COLUMN_LONGITUDE_CUSTOM";
     public static final String DB_COLUMN_LATITUDE_CUSTOM = "DB_COLUMN_LATITUDE_CUSTOM";
+    // WGS84 坐标按 1e-6 度（约 0.1 米）量化后的整数，两者组成唯一索引，同一位置只保留一条记录
+    public static final String DB_COLUMN_LONGITUDE_KEY = "DB_COLUMN_LONGITUDE_KEY";
+    public static final String DB_COLUMN_LATITUDE_KEY = "DB_COLUMN_LATITUDE_KEY";
+    // 名称（即地址）按 SearchText 分词后的文本，由 FTS 表索引
+    public static final String DB_COLUMN_SEARCH_TEXT = "DB_COLUMN_SEARCH_TEXT";
+    public static final String FTS_TABLE_NAME = TABLE_NAME + "_fts";
+    // WGS84 坐标的 geohash，带索引，查询附近记录时按网格前缀取候选
+    public static final String DB_COLUMN_GEOHASH = "DB_COLUMN_GEOHASH";
 
-    private static final int DB_VERSION = 1;
+    private static final double KEY_SCALE = 1e6;
+
+    private static final int DB_VERSION = 4;
     private static final String DB_NAME = "HistoryLocation.db";
+    // 新增的列放在最后，按列序号读取的代码不受影响
     private static final String CREATE_TABLE = "create table if not exists " + TABLE_NAME +
             " (DB_COLUMN_ID INTEGER PRIMARY KEY AUTOINCREMENT, DB_COLUMN_LOCATION TEXT, " +
-            "DB_COLUMN_LONGITUDE_WGS84 TEXT NOT NULL, DB_COLUMN_LATITUDE_WGS84 TEXT NOT NULL, " +
-            "DB_COLUMN_TIMESTAMP BIGINT NOT NULL, DB_COLUMN_LONGITUDE_CUSTOM TEXT NOT NULL, DB_COLUMN_LATITUDE_CUSTOM TEXT NOT NULL)";
-            
+            "DB_COLUMN_LONGITUDE_WGS84 REAL NOT NULL, DB_COLUMN_LATITUDE_WGS84 REAL NOT NULL, " +
+            "DB_COLUMN_TIMESTAMP BIGINT NOT NULL, DB_COLUMN_LONGITUDE_CUSTOM REAL NOT NULL, DB_COLUMN_LATITUDE_CUSTOM REAL NOT NULL, " +
+            "DB_COLUMN_LONGITUDE_KEY INTEGER NOT NULL, DB_COLUMN_LATITUDE_KEY INTEGER NOT NULL, DB_COLUMN_SEARCH_TEXT TEXT, " +
+            "DB_COLUMN_GEOHASH TEXT)";
+    private static final String CREATE_INDEX_KEY = "create unique index if not exists " + TABLE_NAME + "_key on " +
+            TABLE_NAME + " (DB_COLUMN_LONGITUDE_KEY, DB_COLUMN_LATITUDE_KEY)";
+    private static final String CREATE_INDEX_TIMESTAMP = "create index if not exists " + TABLE_NAME + "_timestamp on " +
+            TABLE_NAME + " (DB_COLUMN_TIMESTAMP)";
+    private static final String CREATE_INDEX_GEOHASH = "create index if not exists " + TABLE_NAME + "_geohash on " +
+            TABLE_NAME + " (DB_COLUMN_GEOHASH)";
+    // 外部内容的 FTS4 表，只保存索引不保存文本，由下面的触发器与主表同步
+    // FTS5 要到较新的系统 SQLite 才有，FTS4 在所有支持的版本上都可用
+    private static final String CREATE_FTS = "create virtual table if not exists " + FTS_TABLE_NAME +
+            " using fts4(content=\"" + TABLE_NAME + "\", DB_COLUMN_SEARCH_TEXT)";
+    private static final String[] CREATE_FTS_TRIGGERS = {
+            "create trigger if not exists " + FTS_TABLE_NAME + "_bu before update on " + TABLE_NAME +
+                    " begin delete from " + FTS_TABLE_NAME + " where docid = old.DB_COLUMN_ID; end",
+            "create trigger if not exists " + FTS_TABLE_NAME + "_bd before delete on " + TABLE_NAME +
+                    " begin delete from " + FTS_TABLE_NAME + " where docid = old.DB_COLUMN_ID; end",
+            "create trigger if not exists " + FTS_TABLE_NAME + "_au after update on " + TABLE_NAME +
+                    " begin insert into " + FTS_TABLE_NAME + " (docid, DB_COLUMN_SEARCH_TEXT) values (new.DB_COLUMN_ID, new.DB_COLUMN_SEARCH_TEXT); end",
+            "create trigger if not exists " + FTS_TABLE_NAME + "_ai after insert on " + TABLE_NAME +
+                    " begin insert into " + FTS_TABLE_NAME + " (docid, DB_COLUMN_SEARCH_TEXT) values (new.DB_COLUMN_ID, new.DB_COLUMN_SEARCH_TEXT); end",
+    };
+
     public DataBaseHistoryLocation(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+        this(context, DB_NAME);
+    }
+
+    // 测试时使用其他文件名，不读写用户的历史记录
+    DataBaseHistoryLocation(Context context, String name) {
+        super(context, name, null, DB_VERSION);
+        // 写入不阻塞列表读取
+        setWriteAheadLoggingEnabled(true);
     }
-    
+
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL(CREATE_TABLE);
+        sqLiteDatabase.execSQL(CREATE_INDEX_KEY);
+        sqLiteDatabase.execSQL(CREATE_INDEX_TIMESTAMP);
+        sqLiteDatabase.execSQL(CREATE_INDEX_GEOHASH);
+        createSearchIndex(sqLiteDatabase);
     }
-    
+
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        String sql = "DROP TABLE IF EXISTS " + TABLE_NAME;
-        sqLiteDatabase.execSQL(sql);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < 2) {
+            // v1 的坐标为 TEXT 且允许重复，转换为 REAL 后按时间顺序插入，同一位置保留最新的一条
+            String old = TABLE_NAME + "_v1";
+            sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + old);
+            onCreate(sqLiteDatabase);
+            sqLiteDatabase.execSQL("INSERT OR REPLACE INTO " + TABLE_NAME + " (DB_COLUMN_ID, DB_COLUMN_LOCATION, " +
+                    "DB_COLUMN_LONGITUDE_WGS84, DB_COLUMN_LATITUDE_WGS84, DB_COLUMN_TIMESTAMP, " +
+                    "DB_COLUMN_LONGITUDE_CUSTOM, DB_COLUMN_LATITUDE_CUSTOM, DB_COLUMN_LONGITUDE_KEY, DB_COLUMN_LATITUDE_KEY) SELECT " +
+                    "DB_COLUMN_ID, DB_COLUMN_LOCATION, " +
+                    "CAST(DB_COLUMN_LONGITUDE_WGS84 AS REAL), CAST(DB_COLUMN_LATITUDE_WGS84 AS REAL), " +
+                    "DB_COLUMN_TIMESTAMP, CAST(DB_COLUMN_LONGITUDE_CUSTOM AS REAL), CAST(DB_COLUMN_LATITUDE_CUSTOM AS REAL), " +
+                    "CAST(ROUND(CAST(DB_COLUMN_LONGITUDE_WGS84 AS REAL) * " + KEY_SCALE + ") AS INTEGER), " +
+                    "CAST(ROUND(CAST(DB_COLUMN_LATITUDE_WGS84 AS REAL) * " + KEY_SCALE + ") AS INTEGER) " +
+                    "FROM " + old + " ORDER BY DB_COLUMN_TIMESTAMP, DB_COLUMN_ID");
+            sqLiteDatabase.execSQL("DROP TABLE " + old);
+        }
+        if (oldVersion < 3) {
+            // 从 v1 升级时上面已经按新结构建表
+            if (oldVersion == 2) {
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN DB_COLUMN_SEARCH_TEXT TEXT");
+                createSearchIndex(sqLiteDatabase);
+            }
+            // 分词在 Java 中完成，逐行补写检索文本，最后从主表重建整个索引
+            try (Cursor cursor = sqLiteDatabase.query(TABLE_NAME, new String[] {DB_COLUMN_ID, DB_COLUMN_LOCATION},
+                    null, null, null, null, null)) {
+                ContentValues values = new ContentValues();
+                while (cursor.moveToNext()) {
+                    values.put(DB_COLUMN_SEARCH_TEXT, SearchText.index(cursor.getString(1)));
+                    sqLiteDatabase.update(TABLE_NAME, values, DB_COLUMN_ID + " = ?", new String[] {Long.toString(cursor.getLong(0))});
+                }
+            }
+            sqLiteDatabase.execSQL("INSERT INTO " + FTS_TABLE_NAME + " (" + FTS_TABLE_NAME + ") VALUES ('rebuild')");
+        }
+        if (oldVersion < 4) {
+            if (oldVersion >= 2) {
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN DB_COLUMN_GEOHASH TEXT");
+                sqLiteDatabase.execSQL(CREATE_INDEX_GEOHASH);
+            }
+            // 与检索文本相同，geohash 在 Java 中计算后逐行补写
+            try (Cursor cursor = sqLiteDatabase.query(TABLE_NAME,
+                    new String[] {DB_COLUMN_ID, DB_COLUMN_LONGITUDE_WGS84, DB_COLUMN_LATITUDE_WGS84},
+                    null, null, null, null, null)) {
+                ContentValues values = new ContentValues();
+                while (cursor.moveToNext()) {
+                    values.put(DB_COLUMN_GEOHASH, GeoHash.encode(cursor.getDouble(1), cursor.getDouble(2), GeoHash.MAX_PRECISION));
+                    sqLiteDatabase.update(TABLE_NAME, values, DB_COLUMN_ID + " = ?", new String[] {Long.toString(cursor.getLong(0))});
+                }
+            }
+        }
+    }
+
+    private static void createSearchIndex(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_FTS);
+        for (String trigger : CREATE_FTS_TRIGGERS) {
+            sqLiteDatabase.execSQL(trigger);
+        }
     }
 
     // 保存选择的位置
     public static void saveHistoryLocation(SQLiteDatabase sqLiteDatabase, ContentValues contentValues) {
         try {
-            // 先删除原来的记录，再插入新记录
-            String longitudeWgs84 = contentValues.getAsString(DB_COLUMN_LONGITUDE_WGS84);
-            String latitudeWgs84 = contentValues.getAsString(DB_COLUMN_LATITUDE_WGS84);
-            sqLiteDatabase.delete(TABLE_NAME,
-                            DB_COLUMN_LONGITUDE_WGS84 + " = ? AND " +
-                            DB_COLUMN_LATITUDE_WGS84 + " = ?",
-                    new String[] {longitudeWgs84, latitudeWgs84});
-            sqLiteDatabase.insert(TABLE_NAME, null, contentValues);
+            // 同一位置已有记录时更新名称和时间，否则插入新记录，两种情况都只走唯一索引
+            double longitudeWgs84 = contentValues.getAsDouble(DB_COLUMN_LONGITUDE_WGS84);
+            double latitudeWgs84 = contentValues.getAsDouble(DB_COLUMN_LATITUDE_WGS84);
+            ContentValues values = new ContentValues(contentValues);
+            values.put(DB_COLUMN_SEARCH_TEXT, SearchText.index(contentValues.getAsString(DB_COLUMN_LOCATION)));
+            values.put(DB_COLUMN_GEOHASH, GeoHash.encode(longitudeWgs84, latitudeWgs84, GeoHash.MAX_PRECISION));
+            values.put(DB_COLUMN_LONGITUDE_KEY, toKey(longitudeWgs84));
+            values.put(DB_COLUMN_LATITUDE_KEY, toKey(latitudeWgs84));
+
+            sqLiteDatabase.beginTransaction();
+            try {
+                int rows = sqLiteDatabase.update(TABLE_NAME, values,
+                        DB_COLUMN_LONGITUDE_KEY + " = ? AND " + DB_COLUMN_LATITUDE_KEY + " = ?",
+                        new String[] {Long.toString(toKey(longitudeWgs84)), Long.toString(toKey(latitudeWgs84))});
+                if (rows == 0) {
+                    sqLiteDatabase.insertOrThrow(TABLE_NAME, null, values);
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
         } catch (Exception e) {
             XLog.e("DATABASE: insert error");
         }
@@ -61,9 +174,14 @@ public class DataBaseHistoryLocation extends SQLiteOpenHelper {
         try{
             ContentValues contentValues = new ContentValues();
             contentValues.put(DB_COLUMN_LOCATION, location);
+            contentValues.put(DB_COLUMN_SEARCH_TEXT, SearchText.index(location));
             sqLiteDatabase.update(TABLE_NAME, contentValues, DB_COLUMN_ID + " = ?", new String[]{locID});
         } catch (Exception e){
             XLog.e("DATABASE: update error");
         }
     }
-}
\ No newline at end of file
+
+    private static long toKey(double degree) {
+        return Math.round(degree * KEY_SCALE);
+    }
+}
@@ -22,37 +22,82 @@ public class DataBaseHistorySearch extends SQLiteOpenHelper {
     public static final int DB_SEARCH_TYPE_KEY = 0;
     // 搜索结果
     public static final int DB_SEARCH_TYPE_RESULT = 1;
+    // 最多保留的记录数，超出后删除最早的记录
+    public static final int DB_MAX_ROWS = 500;
 
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 2;
     private static final String DB_NAME = "HistorySearch.db";
     private static final String CREATE_TABLE = "create table if not exists " + TABLE_NAME +
             " (DB_COLUMN_ID INTEGER PRIMARY KEY AUTOINCREMENT, DB_COLUMN_KEY TEXT NOT NULL, " +
             "DB_COLUMN_DESCRIPTION TEXT, DB_COLUMN_TIMESTAMP BIGINT NOT NULL, DB_COLUMN_IS_LOCATION INTEGER NOT NULL, " +
-            "DB_COLUMN_LONGITUDE_WGS84 TEXT, DB_COLUMN_LATITUDE_WGS84 TEXT, " +
-            "DB_COLUMN_LONGITUDE_CUSTOM TEXT, DB_COLUMN_LATITUDE_CUSTOM TEXT)";
-            
+            "DB_COLUMN_LONGITUDE_WGS84 REAL, DB_COLUMN_LATITUDE_WGS84 REAL, " +
+            "DB_COLUMN_LONGITUDE_CUSTOM REAL, DB_COLUMN_LATITUDE_CUSTOM REAL)";
+    private static final String CREATE_INDEX_KEY = "create unique index if not exists " + TABLE_NAME + "_key on " +
+            TABLE_NAME + " (DB_COLUMN_KEY)";
+    private static final String CREATE_INDEX_TIMESTAMP = "create index if not exists " + TABLE_NAME + "_timestamp on " +
+            TABLE_NAME + " (DB_COLUMN_TIMESTAMP)";
+    // 每次插入后按时间索引删除超出上限的最早记录，更新已有关键字不会触发
+    private static final String DELETE_OVERFLOW = "DELETE FROM " + TABLE_NAME + " WHERE DB_COLUMN_ID IN (SELECT DB_COLUMN_ID FROM " +
+            TABLE_NAME + " ORDER BY DB_COLUMN_TIMESTAMP DESC, DB_COLUMN_ID DESC LIMIT -1 OFFSET " + DB_MAX_ROWS + ")";
+    private static final String CREATE_TRIGGER_TRIM = "create trigger if not exists " + TABLE_NAME + "_trim after insert on " +
+            TABLE_NAME + " begin " + DELETE_OVERFLOW + "; end";
+
     public DataBaseHistorySearch(Context context) {
-        super(context, DB_NAME, null, DB_VERSION);
+        this(context, DB_NAME);
+    }
+
+    // 测试时使用其他文件名，不读写用户的历史记录
+    DataBaseHistorySearch(Context context, String name) {
+        super(context, name, null, DB_VERSION);
+        // 写入不阻塞列表读取
+        setWriteAheadLoggingEnabled(true);
     }
-    
+
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
-        sqLiteDatabase.execSQL(CREATE_TABLE);
+        createTable(sqLiteDatabase);
+        sqLiteDatabase.execSQL(CREATE_TRIGGER_TRIM);
     }
-    
+
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        String sql = "DROP TABLE IF EXISTS " + TABLE_NAME;
-        sqLiteDatabase.execSQL(sql);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < 2) {
+            // v1 的坐标为 TEXT 且同一关键字可能有多条，按时间顺序插入，同一关键字保留最新的一条
+            String old = TABLE_NAME + "_v1";
+            sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_NAME + " RENAME TO " + old);
+            createTable(sqLiteDatabase);
+            sqLiteDatabase.execSQL("INSERT OR REPLACE INTO " + TABLE_NAME + " SELECT " +
+                    "DB_COLUMN_ID, DB_COLUMN_KEY, DB_COLUMN_DESCRIPTION, DB_COLUMN_TIMESTAMP, DB_COLUMN_IS_LOCATION, " +
+                    "CAST(DB_COLUMN_LONGITUDE_WGS84 AS REAL), CAST(DB_COLUMN_LATITUDE_WGS84 AS REAL), " +
+                    "CAST(DB_COLUMN_LONGITUDE_CUSTOM AS REAL), CAST(DB_COLUMN_LATITUDE_CUSTOM AS REAL) " +
+                    "FROM " + old + " ORDER BY DB_COLUMN_TIMESTAMP, DB_COLUMN_ID");
+            sqLiteDatabase.execSQL("DROP TABLE " + old);
+            // 迁移完成后再建触发器，只裁剪一次
+            sqLiteDatabase.execSQL(DELETE_OVERFLOW);
+            sqLiteDatabase.execSQL(CREATE_TRIGGER_TRIM);
+        }
+    }
+
+    private static void createTable(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL(CREATE_TABLE);
+        sqLiteDatabase.execSQL(CREATE_INDEX_KEY);
+        sqLiteDatabase.execSQL(CREATE_INDEX_TIMESTAMP);
     }
 
     public static void saveHistorySearch(SQLiteDatabase sqLiteDatabase, ContentValues contentValues) {
         try {
-            // 先删除原来的记录，再插入新记录
-            String searchKey = contentValues.get(DataBaseHistorySearch.DB_COLUMN_KEY).toString();
-            sqLiteDatabase.delete(DataBaseHistorySearch.TABLE_NAME, DataBaseHistorySearch.DB_COLUMN_KEY + " = ?", new String[] {searchKey});
-            sqLiteDatabase.insert(DataBaseHistorySearch.TABLE_NAME, null, contentValues);
+            // 关键字已存在时更新描述、坐标和时间，否则插入新记录，两种情况都只走唯一索引
+            String searchKey = contentValues.getAsString(DB_COLUMN_KEY);
+            sqLiteDatabase.beginTransaction();
+            try {
+                int rows = sqLiteDatabase.update(TABLE_NAME, contentValues, DB_COLUMN_KEY + " = ?", new String[] {searchKey});
+                if (rows == 0) {
+                    sqLiteDatabase.insertOrThrow(TABLE_NAME, null, contentValues);
+                }
+                sqLiteDatabase.setTransactionSuccessful();
+            } finally {
+                sqLiteDatabase.endTransaction();
+            }
         } catch (Exception e) {
             XLog.e("DATABASE: insert error");
         }
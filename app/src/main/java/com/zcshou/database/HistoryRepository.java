@@ -0,0 +1,414 @@
+package com.zcshou.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.elvishew.xlog.XLog;
+import com.zcshou.core.GeoHash;
+import com.zcshou.core.GeoMath;
+import com.zcshou.core.SearchText;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定位历史和搜索历史的统一入口
+ * <p>
+ * 整个进程共用一对 SQLiteOpenHelper，所有读写都在同一个后台线程中按提交顺序执行，
+ * 结果通过 Callback 回到主线程。列表按 (时间, ID) 倒序做键集分页，
+ * 每次只读取一页，打开很长的历史记录也不会卡住界面。
+ */
+public final class HistoryRepository {
+    public static final int PAGE_SIZE = 100;
+    public static final double NEARBY_RADIUS = 5000;    /* 附近记录的默认查询半径，单位 m */
+
+    private static volatile HistoryRepository sInstance;
+
+    private final DataBaseHistoryLocation mLocationHelper;
+    private final DataBaseHistorySearch mSearchHelper;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "HistoryRepository"));
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Callback<T> {
+        // 在主线程中回调
+        void onResult(T result);
+    }
+
+    /**
+     * 一条定位历史，坐标和时间都是基本类型，显示时再格式化
+     */
+    public static final class LocationRow {
+        public final long id;
+        public final String name;
+        public final double wgsLng;
+        public final double wgsLat;
+        public final long timestamp;   /* 单位 s */
+        public final double bdLng;
+        public final double bdLat;
+
+        LocationRow(long id, String name, double wgsLng, double wgsLat, long timestamp, double bdLng, double bdLat) {
+            this.id = id;
+            this.name = name;
+            this.wgsLng = wgsLng;
+            this.wgsLat = wgsLat;
+            this.timestamp = timestamp;
+            this.bdLng = bdLng;
+            this.bdLat = bdLat;
+        }
+
+        // 重命名后的记录，其余字段不变
+        public LocationRow withName(String name) {
+            return new LocationRow(id, name, wgsLng, wgsLat, timestamp, bdLng, bdLat);
+        }
+    }
+
+    /**
+     * 一条搜索历史，仅搜索关键字的记录没有坐标，此时坐标为 NaN
+     */
+    public static final class SearchRow {
+        public final long id;
+        public final String key;
+        public final String description;
+        public final long timestamp;   /* 单位 s */
+        public final int type;         /* DataBaseHistorySearch.DB_SEARCH_TYPE_KEY 或 DB_SEARCH_TYPE_RESULT */
+        public final double bdLng;
+        public final double bdLat;
+
+        SearchRow(long id, String key, String description, long timestamp, int type, double bdLng, double bdLat) {
+            this.id = id;
+            this.key = key;
+            this.description = description;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.bdLng = bdLng;
+            this.bdLat = bdLat;
+        }
+    }
+
+    private HistoryRepository(DataBaseHistoryLocation locationHelper, DataBaseHistorySearch searchHelper) {
+        mLocationHelper = locationHelper;
+        mSearchHelper = searchHelper;
+    }
+
+    public static HistoryRepository getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (HistoryRepository.class) {
+                if (sInstance == null) {
+                    Context appContext = context.getApplicationContext();
+                    sInstance = new HistoryRepository(new DataBaseHistoryLocation(appContext), new DataBaseHistorySearch(appContext));
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 之后的 getInstance 改用指定文件名的数据库，供测试使用，不读写用户的历史记录
+     * 调用时不应有界面还在使用之前的实例
+     */
+    @VisibleForTesting
+    public static void setTestDatabases(Context context, String locationDbName, String searchDbName) {
+        Context appContext = context.getApplicationContext();
+        synchronized (HistoryRepository.class) {
+            closeInstance();
+            sInstance = new HistoryRepository(new DataBaseHistoryLocation(appContext, locationDbName),
+                    new DataBaseHistorySearch(appContext, searchDbName));
+        }
+    }
+
+    /**
+     * 关闭测试数据库，之后的 getInstance 重新打开默认的数据库
+     */
+    @VisibleForTesting
+    public static void clearTestDatabases() {
+        synchronized (HistoryRepository.class) {
+            closeInstance();
+            sInstance = null;
+        }
+    }
+
+    // 等已提交的读写执行完后关闭数据库，返回后可以删除数据库文件
+    private static void closeInstance() {
+        HistoryRepository instance = sInstance;
+        if (instance == null) {
+            return;
+        }
+
+        instance.mExecutor.execute(() -> {
+            instance.mLocationHelper.close();
+            instance.mSearchHelper.close();
+        });
+        instance.mExecutor.shutdown();
+        try {
+            if (!instance.mExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                XLog.e("DATABASE: close history timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*============================== 定位历史 ==============================*/
+
+    /**
+     * 读取一页定位历史，按时间倒序
+     * @param after 上一页的最后一条，为 null 时读取第一页
+     */
+    public void loadLocations(LocationRow after, int limit, Callback<List<LocationRow>> callback) {
+        mExecutor.execute(() -> post(callback, queryLocations(after, limit)));
+    }
+
+    /**
+     * 按名称全文检索定位历史，结果按时间倒序，最多 limit 条
+     * <p>
+     * 连续的字按短语匹配、最后一个词做前缀匹配，见 SearchText
+     */
+    public void searchLocations(String text, int limit, Callback<List<LocationRow>> callback) {
+        mExecutor.execute(() -> post(callback, querySearchLocations(text, limit)));
+    }
+
+    /**
+     * 查询 WGS84 坐标 (lng, lat) 周围 radius 米内的定位历史，按距离由近到远，最多 limit 条
+     * <p>
+     * 先按 geohash 索引取出覆盖该范围的几个网格中的记录，再计算实际距离过滤和排序
+     */
+    public void nearbyLocations(double lng, double lat, double radius, int limit, Callback<List<LocationRow>> callback) {
+        mExecutor.execute(() -> post(callback, queryNearbyLocations(lng, lat, radius, limit)));
+    }
+
+    public void saveLocation(ContentValues contentValues) {
+        mExecutor.execute(() -> DataBaseHistoryLocation.saveHistoryLocation(locationDb(), contentValues));
+    }
+
+    public void renameLocation(long id, String name, Runnable done) {
+        mExecutor.execute(() -> {
+            DataBaseHistoryLocation.updateHistoryLocation(locationDb(), Long.toString(id), name);
+            post(done);
+        });
+    }
+
+    /**
+     * @param id 小于 0 时删除全部记录
+     */
+    public void deleteLocation(long id, Callback<Boolean> callback) {
+        mExecutor.execute(() -> {
+            boolean deleteRet = true;
+            try {
+                if (id < 0) {
+                    locationDb().delete(DataBaseHistoryLocation.TABLE_NAME, null, null);
+                } else {
+                    locationDb().delete(DataBaseHistoryLocation.TABLE_NAME,
+                            DataBaseHistoryLocation.DB_COLUMN_ID + " = ?", new String[] {Long.toString(id)});
+                }
+            } catch (Exception e) {
+                deleteRet = false;
+                XLog.e("DATABASE: delete location error");
+            }
+            post(callback, deleteRet);
+        });
+    }
+
+    // 删除早于 timestamp（单位 s）的记录
+    public void deleteLocationsBefore(long timestamp) {
+        mExecutor.execute(() -> {
+            try {
+                locationDb().delete(DataBaseHistoryLocation.TABLE_NAME,
+                        DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP + " < ?", new String[] {Long.toString(timestamp)});
+            } catch (Exception e) {
+                XLog.e("DATABASE: archive location error");
+            }
+        });
+    }
+
+    private List<LocationRow> queryLocations(LocationRow after, int limit) {
+        try (Cursor cursor = queryPage(locationDb(), DataBaseHistoryLocation.TABLE_NAME,
+                after == null ? null : new long[] {after.timestamp, after.id}, limit)) {
+            return readLocations(cursor);
+        } catch (Exception e) {
+            XLog.e("DATABASE: query location error");
+            return Collections.emptyList();
+        }
+    }
+
+    private List<LocationRow> querySearchLocations(String text, int limit) {
+        String match = SearchText.match(text);
+        if (match == null) {
+            return Collections.emptyList();
+        }
+
+        // 先在 FTS 表中得到匹配的 docid（即 DB_COLUMN_ID），再按主键取出记录
+        try (Cursor cursor = locationDb().query(DataBaseHistoryLocation.TABLE_NAME, null,
+                DataBaseHistoryLocation.DB_COLUMN_ID + " IN (SELECT docid FROM " + DataBaseHistoryLocation.FTS_TABLE_NAME +
+                        " WHERE " + DataBaseHistoryLocation.FTS_TABLE_NAME + " MATCH ?)", new String[] {match},
+                null, null, "DB_COLUMN_TIMESTAMP DESC, DB_COLUMN_ID DESC", Integer.toString(limit))) {
+            return readLocations(cursor);
+        } catch (Exception e) {
+            XLog.e("DATABASE: search location error");
+            return Collections.emptyList();
+        }
+    }
+
+    private List<LocationRow> queryNearbyLocations(double lng, double lat, double radius, int limit) {
+        List<String> cells = GeoHash.cover(lng, lat, radius);
+        StringBuilder selection = new StringBuilder();
+        String[] args = new String[cells.size() * 2];
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0) {
+                selection.append(" OR ");
+            }
+            // 前缀写成区间，每一段都能直接在索引上定位，LIKE 默认不区分大小写，用不上索引
+            selection.append("(DB_COLUMN_GEOHASH >= ? AND DB_COLUMN_GEOHASH < ?)");
+            args[i * 2] = cells.get(i);
+            args[i * 2 + 1] = cells.get(i) + GeoHash.PREFIX_END;
+        }
+
+        List<LocationRow> candidates;
+        try (Cursor cursor = locationDb().query(DataBaseHistoryLocation.TABLE_NAME, null,
+                selection.toString(), args, null, null, null)) {
+            candidates = readLocations(cursor);
+        } catch (Exception e) {
+            XLog.e("DATABASE: nearby location error");
+            return Collections.emptyList();
+        }
+
+        int count = 0;
+        LocationRow[] rows = new LocationRow[candidates.size()];
+        double[] distances = new double[candidates.size()];
+        for (LocationRow row : candidates) {
+            double distance = GeoMath.getDistance(lng, lat, row.wgsLng, row.wgsLat);
+            if (distance <= radius) {
+                rows[count] = row;
+                distances[count] = distance;
+                count++;
+            }
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+
+        List<LocationRow> result = new ArrayList<>(Math.min(count, limit));
+        for (int i = 0; i < count && i < limit; i++) {
+            result.add(rows[order[i]]);
+        }
+        return result;
+    }
+
+    private static List<LocationRow> readLocations(Cursor cursor) {
+        List<LocationRow> rows = new ArrayList<>();
+        int id = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_ID);
+        int name = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_LOCATION);
+        int wgsLng = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84);
+        int wgsLat = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84);
+        int timestamp = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP);
+        int bdLng = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM);
+        int bdLat = cursor.getColumnIndexOrThrow(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM);
+
+        while (cursor.moveToNext()) {
+            rows.add(new LocationRow(cursor.getLong(id), cursor.getString(name),
+                    cursor.getDouble(wgsLng), cursor.getDouble(wgsLat), cursor.getLong(timestamp),
+                    cursor.getDouble(bdLng), cursor.getDouble(bdLat)));
+        }
+
+        return rows;
+    }
+
+    /*============================== 搜索历史 ==============================*/
+
+    public void loadSearches(SearchRow after, int limit, Callback<List<SearchRow>> callback) {
+        mExecutor.execute(() -> post(callback, querySearches(after, limit)));
+    }
+
+    public void saveSearch(ContentValues contentValues) {
+        mExecutor.execute(() -> DataBaseHistorySearch.saveHistorySearch(searchDb(), contentValues));
+    }
+
+    public void deleteSearch(String key, Callback<Boolean> callback) {
+        mExecutor.execute(() -> {
+            boolean deleteRet = true;
+            try {
+                searchDb().delete(DataBaseHistorySearch.TABLE_NAME, DataBaseHistorySearch.DB_COLUMN_KEY + " = ?", new String[] {key});
+            } catch (Exception e) {
+                deleteRet = false;
+                XLog.e("DATABASE: delete search error");
+            }
+            post(callback, deleteRet);
+        });
+    }
+
+    private List<SearchRow> querySearches(SearchRow after, int limit) {
+        List<SearchRow> rows = new ArrayList<>();
+
+        try (Cursor cursor = queryPage(searchDb(), DataBaseHistorySearch.TABLE_NAME,
+                after == null ? null : new long[] {after.timestamp, after.id}, limit)) {
+            int id = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_ID);
+            int key = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_KEY);
+            int description = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_DESCRIPTION);
+            int timestamp = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_TIMESTAMP);
+            int type = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_IS_LOCATION);
+            int bdLng = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM);
+            int bdLat = cursor.getColumnIndexOrThrow(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM);
+
+            while (cursor.moveToNext()) {
+                rows.add(new SearchRow(cursor.getLong(id), cursor.getString(key), cursor.getString(description),
+                        cursor.getLong(timestamp), cursor.getInt(type),
+                        cursor.isNull(bdLng) ? Double.NaN : cursor.getDouble(bdLng),
+                        cursor.isNull(bdLat) ? Double.NaN : cursor.getDouble(bdLat)));
+            }
+        } catch (Exception e) {
+            XLog.e("DATABASE: query search error");
+            return Collections.emptyList();
+        }
+
+        return rows;
+    }
+
+    /*============================== 内部 ==============================*/
+
+    // 两张表都有 DB_COLUMN_ID 和带索引的 DB_COLUMN_TIMESTAMP，(时间, ID) 倒序可以直接沿时间索引读取
+    private static Cursor queryPage(SQLiteDatabase db, String table, long[] after, int limit) {
+        String selection = null;
+        String[] args = null;
+        if (after != null) {
+            // 外层的 <= 让查询从时间索引中的位置开始读取，单独用 OR 会从头扫描索引
+            selection = "DB_COLUMN_TIMESTAMP <= ? AND (DB_COLUMN_TIMESTAMP < ? OR DB_COLUMN_ID < ?)";
+            args = new String[] {Long.toString(after[0]), Long.toString(after[0]), Long.toString(after[1])};
+        }
+        return db.query(table, null, selection, args, null, null,
+                "DB_COLUMN_TIMESTAMP DESC, DB_COLUMN_ID DESC", Integer.toString(limit));
+    }
+
+    // SQLiteOpenHelper 会缓存打开的数据库，只有第一次调用时才真正打开
+    private SQLiteDatabase locationDb() {
+        return mLocationHelper.getWritableDatabase();
+    }
+
+    private SQLiteDatabase searchDb() {
+        return mSearchHelper.getWritableDatabase();
+    }
+
+    private <T> void post(Callback<T> callback, T result) {
+        if (callback != null) {
+            mMainHandler.post(() -> callback.onResult(result));
+        }
+    }
+
+    private void post(Runnable done) {
+        if (done != null) {
+            mMainHandler.post(done);
+        }
+    }
+}
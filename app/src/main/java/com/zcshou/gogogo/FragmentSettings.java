@@ -48,6 +48,16 @@ public class FragmentSettings extends PreferenceFragmentCompat {
             pfJoystick.setOnPreferenceChangeListener((preference, newValue) -> !newValue.toString().trim().isEmpty());
         }
 
+        ListPreference pfLocationRate = findPreference("setting_location_rate");
+        if (pfLocationRate != null) {
+            pfLocationRate.setSummaryProvider((Preference.SummaryProvider<ListPreference>) preference -> Objects.requireNonNull(preference.getEntry()));
+        }
+
+        ListPreference pfLocationIdleRate = findPreference("setting_location_idle_rate");
+        if (pfLocationIdleRate != null) {
+            pfLocationIdleRate.setSummaryProvider((Preference.SummaryProvider<ListPreference>) preference -> Objects.requireNonNull(preference.getEntry()));
+        }
+
         EditTextPreference pfWalk = findPreference("setting_walk");
         setupDecimalEditTextPreference(pfWalk);
 
@@ -1,53 +1,51 @@
 package com.zcshou.gogogo;
 
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.text.InputType;
 import android.text.TextUtils;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.LinearLayout;
-import android.widget.ListView;
 import android.widget.SearchView;
-import android.widget.SimpleAdapter;
 import android.widget.TextView;
 import android.widget.EditText;
 import android.widget.PopupMenu;
 import android.view.Gravity;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Objects;
 import java.util.Locale;
 import java.util.List;
-import java.util.Map;
 
-import com.zcshou.database.DataBaseHistoryLocation;
+import com.baidu.mapapi.model.LatLng;
+import com.zcshou.database.HistoryRepository;
 import com.zcshou.utils.GoUtils;
+import com.zcshou.utils.MapUtils;
 
 public class HistoryActivity extends BaseActivity {
-    public static final String KEY_ID = "KEY_ID";
-    public static final String KEY_LOCATION = "KEY_LOCATION";
-    public static final String KEY_TIME = "KEY_TIME";
-    public static final String KEY_LNG_LAT_WGS = "KEY_LNG_LAT_WGS";
-    public static final String KEY_LNG_LAT_CUSTOM = "KEY_LNG_LAT_CUSTOM";
+    // 距离列表末尾不足这么多条时读取下一页
+    private static final int LOAD_MORE_THRESHOLD = 20;
 
-    private ListView mRecordListView;
+    private RecyclerView mRecordListView;
     private TextView noRecordText;
     private LinearLayout mSearchLayout;
-    private SQLiteDatabase mHistoryLocationDB;
-    private List<Map<String, Object>> mAllRecord;
+    private HistoryRepository mHistoryRepository;
+    private HistoryAdapter mRecordAdapter;
+    private HistoryRepository.LocationRow mLastRow;     /* 已加载的最后一条，下一页从它之后开始 */
+    private int mLoadVersion = 0;                       /* 重新加载时递增，丢弃旧请求的结果 */
+    private int mSearchVersion = 0;                     /* 搜索内容变化时递增 */
+    private boolean isLoading = false;
+    private boolean isLoadedAll = false;
     private SharedPreferences sharedPreferences;
 
     @Override
@@ -77,12 +75,6 @@ public class HistoryActivity extends BaseActivity {
         initRecordListView();
     }
 
-    @Override
-    protected void onDestroy() {
-        mHistoryLocationDB.close();
-        super.onDestroy();
-    }
-
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the menu; this add items to the action bar if it is present.
@@ -97,17 +89,15 @@ public class HistoryActivity extends BaseActivity {
         if (id == android.R.id.home) {
             this.finish(); // back button
             return true;
+        } else if (id == R.id.action_nearby) {
+            showNearbyRecord();
+            return true;
         } else if (id ==  R.id.action_delete) {
             new AlertDialog.Builder(HistoryActivity.this)
                     .setTitle("警告")//这里是表头的内容
                     .setMessage("确定要删除全部历史记录吗?")//这里是中间显示的具体信息
                     .setPositiveButton("确定",
-                            (dialog, which) -> {
-                                if (deleteRecord(-1)) {
-                                    GoUtils.DisplayToast(this, getResources().getString(R.string.history_delete_ok));
-                                    updateRecordList();
-                                }
-                            })
+                            (dialog, which) -> deleteRecord(-1))
                     .setNegativeButton("取消",
                             (dialog, which) -> {
                             })
@@ -119,59 +109,12 @@ public class HistoryActivity extends BaseActivity {
     }
 
     private void initLocationDataBase() {
-        try {
-            DataBaseHistoryLocation hisLocDBHelper = new DataBaseHistoryLocation(getApplicationContext());
-            mHistoryLocationDB = hisLocDBHelper.getWritableDatabase();
-        } catch (Exception e) {
-            Log.e("HistoryActivity", "ERROR - initLocationDataBase");
-        }
+        // 数据库在后台线程中打开，这里不会阻塞界面
+        mHistoryRepository = HistoryRepository.getInstance(this);
 
         recordArchive();
     }
 
-    //sqlite 操作 查询所有记录
-    private List<Map<String, Object>> fetchAllRecord() {
-        List<Map<String, Object>> data = new ArrayList<>();
-
-        try {
-            Cursor cursor = mHistoryLocationDB.query(DataBaseHistoryLocation.TABLE_NAME, null,
-                    DataBaseHistoryLocation.DB_COLUMN_ID + " > ?", new String[] {"0"},
-                    null, null, DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP + " DESC", null);
-
-            while (cursor.moveToNext()) {
-                Map<String, Object> item = new HashMap<>();
-                int ID = cursor.getInt(0);
-                String Location = cursor.getString(1);
-                String Longitude = cursor.getString(2);
-                String Latitude = cursor.getString(3);
-                long TimeStamp = cursor.getInt(4);
-                String BD09Longitude = cursor.getString(5);
-                String BD09Latitude = cursor.getString(6);
-                Log.d("TB", ID + "\t" + Location + "\t" + Longitude + "\t" + Latitude + "\t" + TimeStamp + "\t" + BD09Longitude + "\t" + BD09Latitude);
-                BigDecimal bigDecimalLongitude = BigDecimal.valueOf(Double.parseDouble(Longitude));
-                BigDecimal bigDecimalLatitude = BigDecimal.valueOf(Double.parseDouble(Latitude));
-                BigDecimal bigDecimalBDLongitude = BigDecimal.valueOf(Double.parseDouble(BD09Longitude));
-                BigDecimal bigDecimalBDLatitude = BigDecimal.valueOf(Double.parseDouble(BD09Latitude));
-                double doubleLongitude = bigDecimalLongitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleLatitude = bigDecimalLatitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleBDLongitude = bigDecimalBDLongitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleBDLatitude = bigDecimalBDLatitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                item.put(KEY_ID, Integer.toString(ID));
-                item.put(KEY_LOCATION, Location);
-                item.put(KEY_TIME, GoUtils.timeStamp2Date(Long.toString(TimeStamp)));
-                item.put(KEY_LNG_LAT_WGS, "[经度:" + doubleLongitude + " 纬度:" + doubleLatitude + "]");
-                item.put(KEY_LNG_LAT_CUSTOM, "[经度:" + doubleBDLongitude + " 纬度:" + doubleBDLatitude + "]");
-                data.add(item);
-            }
-            cursor.close();
-        } catch (Exception e) {
-            data.clear();
-            Log.e("HistoryActivity", "ERROR - fetchAllRecord");
-        }
-
-        return data;
-    }
-
     private void recordArchive() {
         double limits;
         try {
@@ -181,30 +124,26 @@ public class HistoryActivity extends BaseActivity {
         }
         final long weekSecond = (long) (limits * 24 * 60 * 60);
 
-        try {
-            mHistoryLocationDB.delete(DataBaseHistoryLocation.TABLE_NAME,
-                    DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP + " < ?", new String[] {Long.toString(System.currentTimeMillis() / 1000 - weekSecond)});
-        } catch (Exception e) {
-            Log.e("HistoryActivity", "ERROR - recordArchive");
-        }
+        // 与后面的查询在同一线程中按顺序执行，第一页读到的已经是清理后的记录
+        mHistoryRepository.deleteLocationsBefore(System.currentTimeMillis() / 1000 - weekSecond);
     }
 
-    private boolean deleteRecord(int ID) {
-        boolean deleteRet = true;
-
-        try {
-            if (ID <= -1) {
-                mHistoryLocationDB.delete(DataBaseHistoryLocation.TABLE_NAME,null, null);
-            } else {
-                mHistoryLocationDB.delete(DataBaseHistoryLocation.TABLE_NAME,
-                        DataBaseHistoryLocation.DB_COLUMN_ID + " = ?", new String[] {Integer.toString(ID)});
+    private void deleteRecord(long ID) {
+        mHistoryRepository.deleteLocation(ID, deleteRet -> {
+            if (deleteRet && !isDestroyed()) {
+                GoUtils.DisplayToast(this, getResources().getString(R.string.history_delete_ok));
+                if (ID < 0) {
+                    // 全部删除后搜索结果也不再有效，还未返回的查询结果不再显示
+                    ++mSearchVersion;
+                    mRecordAdapter.showAll();
+                    updateRecordList();
+                } else {
+                    // 只去掉这一行，已读取的页和正在显示的搜索结果保持不变
+                    mRecordAdapter.removeRow(ID);
+                    showRecordList();
+                }
             }
-        } catch (Exception e) {
-            deleteRet = false;
-            Log.e("HistoryActivity", "ERROR - deleteRecord");
-        }
-
-        return deleteRet;
+        });
     }
 
     private void initSearchView() {
@@ -221,39 +160,17 @@ public class HistoryActivity extends BaseActivity {
 
             @Override
             public boolean onQueryTextChange(String newText) {// 当搜索内容改变时触发该方法
+                // 输入变化后，之前还未返回的查询结果不再显示
+                final int version = ++mSearchVersion;
                 if (TextUtils.isEmpty(newText)) {
-                    SimpleAdapter simAdapt = new SimpleAdapter(
-                            HistoryActivity.this.getBaseContext(),
-                            mAllRecord,
-                            R.layout.history_item,
-                            new String[]{KEY_ID, KEY_LOCATION, KEY_TIME, KEY_LNG_LAT_WGS, KEY_LNG_LAT_CUSTOM}, // 与下面数组元素要一一对应
-                            new int[]{R.id.LocationID, R.id.LocationText, R.id.TimeText, R.id.WGSLatLngText, R.id.BDLatLngText});
-                    mRecordListView.setAdapter(simAdapt);
+                    mRecordAdapter.showAll();
                 } else {
-                    List<Map<String, Object>> searchRet = new ArrayList<>();
-                    for (int i = 0; i < mAllRecord.size(); i++){
-                        if (mAllRecord.get(i).toString().indexOf(newText) > 0){
-                            searchRet.add(mAllRecord.get(i));
+                    // 在全部记录的全文索引中查找，不限于已加载的几页
+                    mHistoryRepository.searchLocations(newText, HistoryRepository.PAGE_SIZE, rows -> {
+                        if (version == mSearchVersion && !isDestroyed()) {
+                            showSearchResult(rows);
                         }
-                    }
-                    if (!searchRet.isEmpty()) {
-                        SimpleAdapter simAdapt = new SimpleAdapter(
-                                HistoryActivity.this.getBaseContext(),
-                                searchRet,
-                                R.layout.history_item,
-                                new String[]{KEY_ID, KEY_LOCATION, KEY_TIME, KEY_LNG_LAT_WGS, KEY_LNG_LAT_CUSTOM}, // 与下面数组元素要一一对应
-                                new int[]{R.id.LocationID, R.id.LocationText, R.id.TimeText, R.id.WGSLatLngText, R.id.BDLatLngText});
-                        mRecordListView.setAdapter(simAdapt);
-                    } else {
-                        GoUtils.DisplayToast(HistoryActivity.this, getResources().getString(R.string.history_error_search));
-                        SimpleAdapter simAdapt = new SimpleAdapter(
-                                HistoryActivity.this.getBaseContext(),
-                                mAllRecord,
-                                R.layout.history_item,
-                                new String[]{KEY_ID, KEY_LOCATION, KEY_TIME, KEY_LNG_LAT_WGS, KEY_LNG_LAT_CUSTOM}, // 与下面数组元素要一一对应
-                                new int[]{R.id.LocationID, R.id.LocationText, R.id.TimeText, R.id.WGSLatLngText, R.id.BDLatLngText});
-                        mRecordListView.setAdapter(simAdapt);
-                    }
+                    });
                 }
 
                 return false;
@@ -261,17 +178,44 @@ public class HistoryActivity extends BaseActivity {
         });
     }
 
+    // 列出当前标记点附近的历史记录，按距离由近到远
+    private void showNearbyRecord() {
+        LatLng mark = MainActivity.getMarkLocation();
+        if (mark == null) {
+            GoUtils.DisplayToast(this, getResources().getString(R.string.app_error_location));
+            return;
+        }
+
+        // 历史记录按 WGS84 坐标建立索引
+        double[] wgs = new double[2];
+        MapUtils.bd2wgsGrid(mark.longitude, mark.latitude, wgs);
+        final int version = ++mSearchVersion;
+        mHistoryRepository.nearbyLocations(wgs[0], wgs[1], HistoryRepository.NEARBY_RADIUS, HistoryRepository.PAGE_SIZE, rows -> {
+            if (version != mSearchVersion || isDestroyed()) {
+                return;
+            }
+            if (rows.isEmpty()) {
+                GoUtils.DisplayToast(this, getResources().getString(R.string.history_nearby_idle));
+            } else {
+                showSearchResult(rows);
+            }
+        });
+    }
+
+    private void showSearchResult(List<HistoryRepository.LocationRow> rows) {
+        if (!rows.isEmpty()) {
+            mRecordAdapter.showRows(rows);
+        } else {
+            GoUtils.DisplayToast(HistoryActivity.this, getResources().getString(R.string.history_error_search));
+            mRecordAdapter.showAll();
+        }
+    }
+
     private void showDeleteDialog(String locID) {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("警告");
         builder.setMessage("确定要删除该项历史记录吗?");
-        builder.setPositiveButton("确定", (dialog, whichButton) -> {
-            boolean deleteRet = deleteRecord(Integer.parseInt(locID));
-            if (deleteRet) {
-                GoUtils.DisplayToast(HistoryActivity.this, getResources().getString(R.string.history_delete_ok));
-                updateRecordList();
-            }
-        });
+        builder.setPositiveButton("确定", (dialog, whichButton) -> deleteRecord(Long.parseLong(locID)));
         builder.setNegativeButton("取消", null);
 
         builder.show();
@@ -287,20 +231,22 @@ public class HistoryActivity extends BaseActivity {
         builder.setView(input);
         builder.setPositiveButton("确认", (dialog, whichButton) -> {
             String userInput = input.getText().toString();
-            DataBaseHistoryLocation.updateHistoryLocation(mHistoryLocationDB, locID, userInput);
-            updateRecordList();
+            long id = Long.parseLong(locID);
+            mHistoryRepository.renameLocation(id, userInput, () -> {
+                if (!isDestroyed()) {
+                    mRecordAdapter.renameRow(id, userInput);
+                }
+            });
         });
         builder.setNegativeButton("取消", null);
 
         builder.show();
     }
 
-    private String[] randomOffset(String longitude, String latitude) {
+    private String[] randomOffset(double lon, double lat) {
         String max_offset_default = getResources().getString(R.string.setting_random_offset_default);
         double lon_max_offset = Double.parseDouble(Objects.requireNonNull(sharedPreferences.getString("setting_lon_max_offset", max_offset_default)));
         double lat_max_offset = Double.parseDouble(Objects.requireNonNull(sharedPreferences.getString("setting_lat_max_offset", max_offset_default)));
-        double lon = Double.parseDouble(longitude);
-        double lat = Double.parseDouble(latitude);
 
         double randomLonOffset = (Math.random() * 2 - 1) * lon_max_offset;  // Longitude offset (meters)
         double randomLatOffset = (Math.random() * 2 - 1) * lat_max_offset;  // Latitude offset (meters)
@@ -318,20 +264,19 @@ public class HistoryActivity extends BaseActivity {
         noRecordText = findViewById(R.id.record_no_textview);
         mSearchLayout = findViewById(R.id.search_linear);
         mRecordListView = findViewById(R.id.record_list_view);
-        mRecordListView.setOnItemClickListener((adapterView, view, i, l) -> {
-            String bd09Longitude;
-            String bd09Latitude;
-            String name;
-            name = (String) ((TextView) view.findViewById(R.id.LocationText)).getText();
-            String bd09LatLng = (String) ((TextView) view.findViewById(R.id.BDLatLngText)).getText();
-            bd09LatLng = bd09LatLng.substring(bd09LatLng.indexOf('[') + 1, bd09LatLng.indexOf(']'));
-            String[] latLngStr = bd09LatLng.split(" ");
-            bd09Longitude = latLngStr[0].substring(latLngStr[0].indexOf(':') + 1);
-            bd09Latitude = latLngStr[1].substring(latLngStr[1].indexOf(':') + 1);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        mRecordListView.setLayoutManager(layoutManager);
+        mRecordListView.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+
+        mRecordAdapter = new HistoryAdapter(this);
+        mRecordAdapter.setOnItemClickListener((view, row) -> {
+            String name = row.name;
+            String bd09Longitude = Double.toString(row.bdLng);
+            String bd09Latitude = Double.toString(row.bdLat);
 
             // Random offset
             if(sharedPreferences.getBoolean("setting_random_offset", false)) {
-                String[] offsetResult = randomOffset(bd09Longitude, bd09Latitude);
+                String[] offsetResult = randomOffset(row.bdLng, row.bdLat);
                 bd09Longitude = offsetResult[0];
                 bd09Latitude = offsetResult[1];
             }
@@ -342,15 +287,15 @@ public class HistoryActivity extends BaseActivity {
             this.finish();
         });
 
-        mRecordListView.setOnItemLongClickListener((parent, view, position, id) -> {
+        mRecordAdapter.setOnItemLongClickListener((view, row) -> {
             PopupMenu popupMenu = new PopupMenu(HistoryActivity.this, view);
             popupMenu.setGravity(Gravity.END | Gravity.BOTTOM);
             popupMenu.getMenu().add("编辑");
             popupMenu.getMenu().add("删除");
 
             popupMenu.setOnMenuItemClickListener(item -> {
-                String locID = ((TextView) view.findViewById(R.id.LocationID)).getText().toString();
-                String name = ((TextView) view.findViewById(R.id.LocationText)).getText().toString();
+                String locID = Long.toString(row.id);
+                String name = row.name;
                 switch (item.getTitle().toString()) {
                     case "编辑":
                         showInputDialog(locID, name);
@@ -367,13 +312,57 @@ public class HistoryActivity extends BaseActivity {
             return true;
         });
 
+        mRecordListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // 显示搜索结果时不继续读取，列表布局变化后也会回调这里
+                int totalItemCount = mRecordAdapter.getItemCount();
+                if (mRecordAdapter.isShowingAll() && totalItemCount > 0
+                        && layoutManager.findLastVisibleItemPosition() + LOAD_MORE_THRESHOLD >= totalItemCount) {
+                    loadRecordPage(false);
+                }
+            }
+        });
+        mRecordListView.setAdapter(mRecordAdapter);
+
         updateRecordList();
     }
 
+    // 从第一页重新读取
     private void updateRecordList() {
-        mAllRecord = fetchAllRecord();
+        loadRecordPage(true);
+    }
+
+    private void loadRecordPage(boolean isReset) {
+        if (!isReset && (isLoading || isLoadedAll)) {
+            return;
+        }
 
-        if (mAllRecord.isEmpty()) {
+        final int version = ++mLoadVersion;
+        isLoading = true;
+        mHistoryRepository.loadLocations(isReset ? null : mLastRow, HistoryRepository.PAGE_SIZE, rows -> {
+            if (version != mLoadVersion || isDestroyed()) {
+                return;
+            }
+
+            isLoading = false;
+            isLoadedAll = rows.size() < HistoryRepository.PAGE_SIZE;
+            if (isReset) {
+                mRecordAdapter.setRows(rows);
+                mLastRow = null;
+            } else {
+                mRecordAdapter.addRows(rows);
+            }
+            if (!rows.isEmpty()) {
+                mLastRow = rows.get(rows.size() - 1);
+            }
+
+            showRecordList();
+        });
+    }
+
+    private void showRecordList() {
+        if (mRecordAdapter.isEmpty()) {
             mRecordListView.setVisibility(View.GONE);
             mSearchLayout.setVisibility(View.GONE);
             noRecordText.setVisibility(View.VISIBLE);
@@ -381,18 +370,6 @@ public class HistoryActivity extends BaseActivity {
             noRecordText.setVisibility(View.GONE);
             mRecordListView.setVisibility(View.VISIBLE);
             mSearchLayout.setVisibility(View.VISIBLE);
-
-            try {
-                SimpleAdapter simAdapt = new SimpleAdapter(
-                        this,
-                        mAllRecord,
-                        R.layout.history_item,
-                        new String[]{KEY_ID, KEY_LOCATION, KEY_TIME, KEY_LNG_LAT_WGS, KEY_LNG_LAT_CUSTOM},
-                        new int[]{R.id.LocationID, R.id.LocationText, R.id.TimeText, R.id.WGSLatLngText, R.id.BDLatLngText});
-                mRecordListView.setAdapter(simAdapt);
-            } catch (Exception e) {
-                Log.e("HistoryActivity", "ERROR - updateRecordList");
-            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package com.zcshou.gogogo;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.zcshou.database.HistoryRepository;
+import com.zcshou.utils.GoUtils;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 定位历史列表，HistoryActivity 和摇杆的历史记录窗口共用
+ * <p>
+ * 列表项直接保存数据库中的 LocationRow，只在绑定到屏幕上的行时才格式化坐标和时间，
+ * 点击时也直接从 LocationRow 中读取坐标，不再从 TextView 的文字中解析。
+ * <p>
+ * 已分页读取的全部记录保存在 mAllRows 中，搜索结果和全部记录之间切换时都交给 ListAdapter 在后台比较新旧列表，
+ * 以记录 ID 作为稳定 ID，只有增删或内容变化的行才会重新绑定。
+ * 删除或重命名一条记录时，在全部记录和正在显示的结果中就地修改这一行，已读取的页和搜索结果都保留。
+ */
+public class HistoryAdapter extends ListAdapter<HistoryRepository.LocationRow, HistoryAdapter.ViewHolder> {
+    private final LayoutInflater mInflater;
+    private final List<HistoryRepository.LocationRow> mAllRows = new ArrayList<>();
+    private final List<HistoryRepository.LocationRow> mShownRows = new ArrayList<>();   /* 正在显示的搜索或附近查询的结果 */
+    private boolean isShowingAll = true;
+    // 只在主线程中使用，保留 11 位小数，与之前的显示一致
+    private final DecimalFormat mCoordinateFormat = new DecimalFormat("0.###########", DecimalFormatSymbols.getInstance(Locale.US));
+    private final StringBuilder mText = new StringBuilder();
+    private OnItemClickListener mClickListener;
+    private OnItemLongClickListener mLongClickListener;
+
+    public interface OnItemClickListener {
+        void onItemClick(View view, HistoryRepository.LocationRow row);
+    }
+
+    public interface OnItemLongClickListener {
+        boolean onItemLongClick(View view, HistoryRepository.LocationRow row);
+    }
+
+    private static final DiffUtil.ItemCallback<HistoryRepository.LocationRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryRepository.LocationRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryRepository.LocationRow oldRow, @NonNull HistoryRepository.LocationRow newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryRepository.LocationRow oldRow, @NonNull HistoryRepository.LocationRow newRow) {
+            return oldRow.timestamp == newRow.timestamp
+                    && Objects.equals(oldRow.name, newRow.name)
+                    && Double.compare(oldRow.wgsLng, newRow.wgsLng) == 0
+                    && Double.compare(oldRow.wgsLat, newRow.wgsLat) == 0
+                    && Double.compare(oldRow.bdLng, newRow.bdLng) == 0
+                    && Double.compare(oldRow.bdLat, newRow.bdLat) == 0;
+        }
+    };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView location;
+        final TextView time;
+        final TextView wgsLatLng;
+        final TextView bdLatLng;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            location = itemView.findViewById(R.id.LocationText);
+            time = itemView.findViewById(R.id.TimeText);
+            wgsLatLng = itemView.findViewById(R.id.WGSLatLngText);
+            bdLatLng = itemView.findViewById(R.id.BDLatLngText);
+        }
+    }
+
+    public HistoryAdapter(Context context) {
+        super(DIFF_CALLBACK);
+        mInflater = LayoutInflater.from(context);
+        mCoordinateFormat.setRoundingMode(RoundingMode.HALF_UP);
+        setHasStableIds(true);
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        mClickListener = listener;
+    }
+
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        mLongClickListener = listener;
+    }
+
+    // 替换全部记录，从第一页重新读取时使用
+    public void setRows(List<HistoryRepository.LocationRow> rows) {
+        mAllRows.clear();
+        mAllRows.addAll(rows);
+        if (isShowingAll) {
+            submitList(new ArrayList<>(mAllRows));
+        }
+    }
+
+    // 在全部记录末尾追加一页
+    public void addRows(List<HistoryRepository.LocationRow> rows) {
+        mAllRows.addAll(rows);
+        if (isShowingAll && !rows.isEmpty()) {
+            submitList(new ArrayList<>(mAllRows));
+        }
+    }
+
+    // 显示搜索或附近查询的结果，全部记录保留不变
+    public void showRows(List<HistoryRepository.LocationRow> rows) {
+        isShowingAll = false;
+        mShownRows.clear();
+        mShownRows.addAll(rows);
+        submitList(new ArrayList<>(mShownRows));
+    }
+
+    public void showAll() {
+        if (!isShowingAll) {
+            isShowingAll = true;
+            submitList(new ArrayList<>(mAllRows));
+        }
+    }
+
+    // 删除一条记录
+    public void removeRow(long id) {
+        updateRow(id, null);
+    }
+
+    // 重命名一条记录
+    public void renameRow(long id, String name) {
+        updateRow(id, name);
+    }
+
+    // name 为 null 时删除该行
+    private void updateRow(long id, String name) {
+        boolean isAllChanged = updateRowIn(mAllRows, id, name);
+        boolean isShownChanged = updateRowIn(mShownRows, id, name);
+        if (isShowingAll ? isAllChanged : isShownChanged) {
+            submitList(new ArrayList<>(isShowingAll ? mAllRows : mShownRows));
+        }
+    }
+
+    private static boolean updateRowIn(List<HistoryRepository.LocationRow> rows, long id, String name) {
+        for (int i = 0; i < rows.size(); i++) {
+            HistoryRepository.LocationRow row = rows.get(i);
+            if (row.id == id) {
+                if (name == null) {
+                    rows.remove(i);
+                } else {
+                    rows.set(i, row.withName(name));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isShowingAll() {
+        return isShowingAll;
+    }
+
+    // 已读取的全部记录是否为空，与当前显示的是否为搜索结果无关
+    public boolean isEmpty() {
+        return mAllRows.isEmpty();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ViewHolder holder = new ViewHolder(mInflater.inflate(R.layout.history_item, parent, false));
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (mClickListener != null && position != RecyclerView.NO_POSITION) {
+                mClickListener.onItemClick(v, getItem(position));
+            }
+        });
+        holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            return mLongClickListener != null && position != RecyclerView.NO_POSITION
+                    && mLongClickListener.onItemLongClick(v, getItem(position));
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        HistoryRepository.LocationRow row = getItem(position);
+        holder.location.setText(row.name);
+        holder.time.setText(GoUtils.timeStamp2Date(row.timestamp));
+        holder.wgsLatLng.setText(formatLatLng(row.wgsLng, row.wgsLat));
+        // 默认不显示，需要时再格式化
+        if (holder.bdLatLng.getVisibility() == View.VISIBLE) {
+            holder.bdLatLng.setText(formatLatLng(row.bdLng, row.bdLat));
+        }
+    }
+
+    private String formatLatLng(double lng, double lat) {
+        mText.setLength(0);
+        mText.append("[经度:").append(mCoordinateFormat.format(lng))
+                .append(" 纬度:").append(mCoordinateFormat.format(lat)).append(']');
+        return mText.toString();
+    }
+}
@@ -12,7 +12,6 @@ import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
@@ -22,6 +21,7 @@ import android.media.Image;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.provider.OpenableColumns;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.view.Gravity;
@@ -37,13 +37,13 @@ import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
-import android.widget.ListView;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
-import android.widget.SimpleAdapter;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AlertDialog;
@@ -53,6 +53,9 @@ import androidx.core.content.ContextCompat;
 import androidx.core.view.GravityCompat;
 import androidx.drawerlayout.widget.DrawerLayout;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.baidu.location.BDAbstractLocationListener;
 import com.baidu.location.BDLocation;
@@ -70,6 +73,7 @@ import com.baidu.mapapi.map.MapView;
 import com.baidu.mapapi.map.MarkerOptions;
 import com.baidu.mapapi.map.MyLocationConfiguration;
 import com.baidu.mapapi.map.MyLocationData;
+import com.baidu.mapapi.map.Overlay;
 import com.baidu.mapapi.map.Polyline;
 import com.baidu.mapapi.map.PolylineOptions;
 import com.baidu.mapapi.model.LatLng;
@@ -80,7 +84,6 @@ import com.baidu.mapapi.search.geocode.GeoCoder;
 import com.baidu.mapapi.search.geocode.OnGetGeoCoderResultListener;
 import com.baidu.mapapi.search.geocode.ReverseGeoCodeOption;
 import com.baidu.mapapi.search.geocode.ReverseGeoCodeResult;
-import com.baidu.mapapi.search.sug.SuggestionResult;
 import com.baidu.mapapi.search.sug.SuggestionSearch;
 import com.baidu.mapapi.search.sug.SuggestionSearchOption;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -94,16 +97,18 @@ import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 import com.zcshou.service.ServiceGo;
 import com.zcshou.database.DataBaseHistoryLocation;
 import com.zcshou.database.DataBaseHistorySearch;
+import com.zcshou.database.HistoryRepository;
 import com.zcshou.utils.CoordinateValidator;
+import com.zcshou.utils.RouteFile;
+import com.zcshou.utils.RouteImporter;
 import com.zcshou.utils.RouteManager;
 import com.zcshou.utils.ShareUtils;
 import com.zcshou.utils.GoUtils;
@@ -124,11 +129,6 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     public static final String LNG_MSG_ID = "LNG_VALUE";
     public static final String ALT_MSG_ID = "ALT_VALUE";
 
-    public static final String POI_NAME = "POI_NAME";
-    public static final String POI_ADDRESS = "POI_ADDRESS";
-    public static final String POI_LONGITUDE = "POI_LONGITUDE";
-    public static final String POI_LATITUDE = "POI_LATITUDE";
-
     private OkHttpClient mOkHttpClient;
     private SharedPreferences sharedPreferences;
 
@@ -139,6 +139,7 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     private MapView mMapView;
     private static BaiduMap mBaiduMap = null;
     private static LatLng mMarkLatLngMap = new LatLng(36.547743718042415, 117.07018449827267); // 当前标记的地图点
+    private static Overlay mMarkOverlay = null;     // 当前标记点的覆盖物，只移除它而不清空地图上的路线
     private static String mMarkName = null;
     private GeoCoder mGeoCoder;
     private SensorManager mSensorManager;
@@ -159,13 +160,14 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     private ServiceConnection mConnection;
     private FloatingActionButton mButtonStart;
     /*============================== 历史记录 相关 ==============================*/
-    private SQLiteDatabase mLocationHistoryDB;
-    private SQLiteDatabase mSearchHistoryDB;
+    private HistoryRepository mHistoryRepository;
     /*============================== SearchView 相关 ==============================*/
     private SearchView searchView;
-    private ListView mSearchList;
+    private RecyclerView mSearchList;
+    private SuggestionAdapter mSuggestionAdapter;
     private LinearLayout mSearchLayout;
-    private ListView mSearchHistoryList;
+    private RecyclerView mSearchHistoryList;
+    private SearchHistoryAdapter mSearchHistoryAdapter;
     private LinearLayout mHistoryLayout;
     private MenuItem searchItem;
     private SuggestionSearch mSuggestionSearch;
@@ -185,6 +187,9 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     private boolean isRouteRunning = false;
 
     private static final String ROUTES_DIRECTORY = "Routes";
+    // 选择要导入的 GPX/KML/GeoJSON 轨迹文件
+    private final ActivityResultLauncher<String[]> mImportRouteLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importRouteFromUri);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -288,10 +293,6 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
         //poi search destroy
         mSuggestionSearch.destroy();
 
-        //close db
-        mLocationHistoryDB.close();
-        mSearchHistoryDB.close();
-
         super.onDestroy();
     }
 
@@ -317,28 +318,7 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
             public boolean onMenuItemActionExpand(MenuItem item) {
                 mSearchLayout.setVisibility(View.INVISIBLE);
                 //展示搜索历史
-                List<Map<String, Object>> data = getSearchHistory();
-
-                if (!data.isEmpty()) {
-                    SimpleAdapter simAdapt = new SimpleAdapter(
-                            MainActivity.this,
-                            data,
-                            R.layout.search_item,
-                            new String[] {DataBaseHistorySearch.DB_COLUMN_KEY,
-                                    DataBaseHistorySearch.DB_COLUMN_DESCRIPTION,
-                                    DataBaseHistorySearch.DB_COLUMN_TIMESTAMP,
-                                    DataBaseHistorySearch.DB_COLUMN_IS_LOCATION,
-                                    DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM,
-                                    DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM},
-                            new int[] {R.id.search_key,
-                                    R.id.search_description,
-                                    R.id.search_timestamp,
-                                    R.id.search_isLoc,
-                                    R.id.search_longitude,
-                                    R.id.search_latitude});
-                    mSearchHistoryList.setAdapter(simAdapt);
-                    mHistoryLayout.setVisibility(View.VISIBLE);
-                }
+                showSearchHistory();
 
                 return true;  // Return true to expand action view
             }
@@ -364,8 +344,8 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                     contentValues.put(DataBaseHistorySearch.DB_COLUMN_IS_LOCATION, DataBaseHistorySearch.DB_SEARCH_TYPE_KEY);
                     contentValues.put(DataBaseHistorySearch.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
 
-                    DataBaseHistorySearch.saveHistorySearch(mSearchHistoryDB, contentValues);
-                    mBaiduMap.clear();
+                    mHistoryRepository.saveSearch(contentValues);
+                    clearMarkOverlay();
                     mSearchLayout.setVisibility(View.INVISIBLE);
                 } catch (Exception e) {
                     GoUtils.DisplayToast(MainActivity.this, getResources().getString(R.string.app_error_search));
@@ -474,8 +454,9 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 fileName += "_" + System.currentTimeMillis();
             }
 
-            if (!fileName.endsWith(".json")) {
-                fileName += ".json";
+            // 默认保存为二进制格式，手动输入 .json 扩展名时导出为 JSON
+            if (!fileName.endsWith(RouteFile.EXT_BINARY) && !fileName.endsWith(RouteFile.EXT_JSON)) {
+                fileName += RouteFile.EXT_BINARY;
             }
 
             saveRouteToFile(fileName);
@@ -571,11 +552,11 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
         }
         mRouteManager.setRouteListener(new RouteManager.RouteListener() {
             @Override
-            public void onPositionUpdate(double wgsLng, double wgsLat) {
+            public void onPositionUpdate(double wgsLng, double wgsLat, float bearing, double speed) {
                 // 更新模拟位置
                 if (mServiceBinder != null) {
                     double alt = Double.parseDouble(sharedPreferences.getString("setting_altitude", "55.0"));
-                    mServiceBinder.setPosition(wgsLng, wgsLat, alt);
+                    mServiceBinder.setPosition(wgsLng, wgsLat, alt, bearing, speed);
                 }
             }
 
@@ -637,7 +618,7 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
      * 显示单个路径的操作选项
      */
     private void showRouteOptionsDialog(String fileName) {
-        String[] options = {"加载路径", "删除路径", "重命名路径"};
+        String[] options = {"加载路径", "删除路径", "重命名路径", "转换格式"};
 
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("操作: " + fileName);
@@ -652,6 +633,9 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 case 2: // 重命名
                     renameRouteFile(fileName);
                     break;
+                case 3: // 二进制与 JSON 互相转换
+                    convertRouteFile(fileName);
+                    break;
             }
         });
         builder.setNegativeButton("取消", null);
@@ -679,6 +663,75 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 .show();
     }
 
+    /**
+     * 在后台线程中流式导入轨迹文件，完成后回到主线程替换当前路径
+     */
+    private void importRouteFromUri(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+
+        String name = uri.getLastPathSegment();
+        try (Cursor cursor = getContentResolver().query(uri, new String[] {OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                name = cursor.getString(0);
+            }
+        } catch (Exception e) {
+            XLog.e("ERROR: query route file name");
+        }
+
+        if (name == null || !RouteImporter.isSupported(name)) {
+            Snackbar.make(mButtonStart, "不支持的轨迹格式", Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+
+        final String fileName = name;
+        Snackbar.make(mButtonStart, "正在导入: " + fileName, Snackbar.LENGTH_SHORT).show();
+        new Thread(() -> {
+            RouteFile route = null;
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in != null) {
+                    route = RouteImporter.importRoute(in, fileName, RouteImporter.DEFAULT_SPACING);
+                }
+            } catch (IOException e) {
+                XLog.e("ERROR: import route " + e.getMessage());
+            }
+
+            final RouteFile result = route;
+            runOnUiThread(() -> {
+                if (result == null || result.size() < 2) {
+                    Snackbar.make(mButtonStart, "轨迹导入失败", Snackbar.LENGTH_SHORT).show();
+                    return;
+                }
+                mRouteManager.importRoute(result);
+                zoomToRoute();
+                Snackbar.make(mButtonStart, "已导入 " + result.size() + " 个点", Snackbar.LENGTH_SHORT).show();
+            });
+        }, "RouteImport").start();
+    }
+
+    /**
+     * 转换路径文件格式：JSON 转为二进制，二进制导出为 JSON，原文件保留
+     */
+    private void convertRouteFile(String fileName) {
+        boolean isJson = fileName.endsWith(RouteFile.EXT_JSON);
+        String srcExt = isJson ? RouteFile.EXT_JSON : RouteFile.EXT_BINARY;
+        String dstExt = isJson ? RouteFile.EXT_BINARY : RouteFile.EXT_JSON;
+        String newFileName = fileName.substring(0, fileName.length() - srcExt.length()) + dstExt;
+
+        File routesDir = new File(getExternalFilesDir(null), ROUTES_DIRECTORY);
+        File srcFile = new File(routesDir, fileName);
+        File dstFile = new File(routesDir, newFileName);
+
+        if (dstFile.exists()) {
+            Snackbar.make(mButtonStart, "文件已存在: " + newFileName, Snackbar.LENGTH_SHORT).show();
+        } else if (mRouteManager.convertRouteFile(srcFile.getAbsolutePath(), dstFile.getAbsolutePath())) {
+            Snackbar.make(mButtonStart, "转换成功: " + newFileName, Snackbar.LENGTH_SHORT).show();
+        } else {
+            Snackbar.make(mButtonStart, "转换失败", Snackbar.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * 重命名路径文件
      */
@@ -690,8 +743,9 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
         EditText fileNameEditText = view.findViewById(R.id.file_name);
         CheckBox includeTimestampCheckbox = view.findViewById(R.id.include_timestamp);
 
-        // 移除原有扩展名
-        String nameWithoutExt = oldFileName.replace(".json", "");
+        // 移除原有扩展名，重命名后保持原格式
+        String ext = oldFileName.endsWith(RouteFile.EXT_JSON) ? RouteFile.EXT_JSON : RouteFile.EXT_BINARY;
+        String nameWithoutExt = oldFileName.endsWith(ext) ? oldFileName.substring(0, oldFileName.length() - ext.length()) : oldFileName;
         fileNameEditText.setText(nameWithoutExt);
         includeTimestampCheckbox.setVisibility(View.GONE);
 
@@ -703,8 +757,8 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 return;
             }
 
-            if (!newFileName.endsWith(".json")) {
-                newFileName += ".json";
+            if (!newFileName.endsWith(ext)) {
+                newFileName += ext;
             }
 
             File routesDir = new File(getExternalFilesDir(null), ROUTES_DIRECTORY);
@@ -733,6 +787,8 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 startActivity(intent);
             } else if (id == R.id.nav_routes) {
                 showRoutesManagementDialog();
+            } else if (id == R.id.nav_import_route) {
+                mImportRouteLauncher.launch(new String[] {"*/*"});
             }
             else if (id == R.id.nav_settings) {
                 Intent intent = new Intent(MainActivity.this, SettingsActivity.class);
@@ -935,6 +991,29 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 mBaiduMap.animateMapStatus(MapStatusUpdateFactory.zoomIn());
             }
         });
+        mBaiduMap.setOnMapStatusChangeListener(new BaiduMap.OnMapStatusChangeListener() {
+            @Override
+            public void onMapStatusChangeStart(MapStatus status) {
+            }
+
+            @Override
+            public void onMapStatusChangeStart(MapStatus status, int reason) {
+            }
+
+            @Override
+            public void onMapStatusChange(MapStatus status) {
+            }
+
+            /**
+             * 缩放结束后按新的级别切换路线的抽稀折线
+             */
+            @Override
+            public void onMapStatusChangeFinish(MapStatus status) {
+                if (mRouteManager != null) {
+                    mRouteManager.onMapZoomChanged(status.zoom);
+                }
+            }
+        });
 
         View poiView = View.inflate(MainActivity.this, R.layout.location_poi_info, null);
         TextView poiAddress = poiView.findViewById(R.id.poi_address);
@@ -1172,13 +1251,20 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     private void markMap() {
         if (mMarkLatLngMap != null) {
             MarkerOptions ooA = new MarkerOptions().position(mMarkLatLngMap).icon(mMapIndicator);
-            mBaiduMap.clear();
-            mBaiduMap.addOverlay(ooA);
+            clearMarkOverlay();
+            mMarkOverlay = mBaiduMap.addOverlay(ooA);
+        }
+    }
+
+    private static void clearMarkOverlay() {
+        if (mMarkOverlay != null) {
+            mMarkOverlay.remove();
+            mMarkOverlay = null;
         }
     }
 
     private void resetMap() {
-        mBaiduMap.clear();
+        clearMarkOverlay();
         mMarkLatLngMap = null;
 
         MyLocationData locData = new MyLocationData.Builder()
@@ -1193,6 +1279,11 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
         mBaiduMap.animateMapStatus(MapStatusUpdateFactory.newMapStatus(builder.build()));
     }
 
+    // 当前标记的地图点（BD09），没有标记时返回 null
+    public static LatLng getMarkLocation() {
+        return mMarkLatLngMap;
+    }
+
     // 在地图上显示位置
     public static boolean showLocation(String name, String bd09Longitude, String bd09Latitude) {
         boolean ret = true;
@@ -1202,8 +1293,8 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 mMarkName = name;
                 mMarkLatLngMap = new LatLng(Double.parseDouble(bd09Latitude), Double.parseDouble(bd09Longitude));
                 MarkerOptions ooA = new MarkerOptions().position(mMarkLatLngMap).icon(mMapIndicator);
-                mBaiduMap.clear();
-                mBaiduMap.addOverlay(ooA);
+                clearMarkOverlay();
+                mMarkOverlay = mBaiduMap.addOverlay(ooA);
                 MapStatusUpdate mapstatusupdate = MapStatusUpdateFactory.newLatLng(mMarkLatLngMap);
                 mBaiduMap.setMapStatus(mapstatusupdate);
             }
@@ -1229,7 +1320,7 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
     private void startGoLocation() {
         Intent serviceGoIntent = new Intent(MainActivity.this, ServiceGo.class);
         bindService(serviceGoIntent, mConnection, BIND_AUTO_CREATE);    // 绑定服务和活动，之后活动就可以去调服务的方法了
-        double[] latLng = MapUtils.bd2wgs(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
+        double[] latLng = MapUtils.bd2wgsExact(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
         serviceGoIntent.putExtra(LNG_MSG_ID, latLng[0]);
         serviceGoIntent.putExtra(LAT_MSG_ID, latLng[1]);
         double alt = Double.parseDouble(sharedPreferences.getString("setting_altitude", "55.0"));
@@ -1271,14 +1362,14 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                         .setAction("Action", null).show();
                 mButtonStart.setImageResource(R.drawable.ic_position);
             } else {
-                double[] latLng = MapUtils.bd2wgs(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
+                double[] latLng = MapUtils.bd2wgsExact(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
                 double alt = Double.parseDouble(sharedPreferences.getString("setting_altitude", "55.0"));
                 mServiceBinder.setPosition(latLng[0], latLng[1], alt);
                 Snackbar.make(v, "已传送到新位置", Snackbar.LENGTH_LONG)
                         .setAction("Action", null).show();
 
                 recordCurrentLocation(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
-                mBaiduMap.clear();
+                clearMarkOverlay();
                 mMarkLatLngMap = null;
             }
         } else {
@@ -1295,7 +1386,7 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                             .setAction("Action", null).show();
 
                     recordCurrentLocation(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
-                    mBaiduMap.clear();
+                    clearMarkOverlay();
                     mMarkLatLngMap = null;
                 }
             }
@@ -1304,50 +1395,30 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
 
     /*============================== 历史记录 相关 ==============================*/
     private void initStoreHistory() {
-        try {
-            // 定位历史
-            DataBaseHistoryLocation dbLocation = new DataBaseHistoryLocation(getApplicationContext());
-            mLocationHistoryDB = dbLocation.getWritableDatabase();
-            // 搜索历史
-            DataBaseHistorySearch dbHistory = new DataBaseHistorySearch(getApplicationContext());
-            mSearchHistoryDB = dbHistory.getWritableDatabase();
-        } catch (Exception e) {
-            XLog.e("ERROR: sqlite init error");
-        }
+        // 定位历史和搜索历史，数据库在后台线程中打开
+        mHistoryRepository = HistoryRepository.getInstance(this);
     }
 
-    //获取查询历史
-    private List<Map<String, Object>> getSearchHistory() {
-        List<Map<String, Object>> data = new ArrayList<>();
-
-        try {
-            Cursor cursor = mSearchHistoryDB.query(DataBaseHistorySearch.TABLE_NAME, null,
-                    DataBaseHistorySearch.DB_COLUMN_ID + " > ?", new String[] {"0"},
-                    null, null, DataBaseHistorySearch.DB_COLUMN_TIMESTAMP + " DESC", null);
-
-            while (cursor.moveToNext()) {
-                Map<String, Object> searchHistoryItem = new HashMap<>();
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_KEY, cursor.getString(1));
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_DESCRIPTION, cursor.getString(2));
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_TIMESTAMP, "" + cursor.getInt(3));
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_IS_LOCATION, "" + cursor.getInt(4));
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM, cursor.getString(7));
-                searchHistoryItem.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM, cursor.getString(8));
-                data.add(searchHistoryItem);
+    //展示搜索历史，记录数有上限，一次读取全部
+    private void showSearchHistory() {
+        mHistoryRepository.loadSearches(null, DataBaseHistorySearch.DB_MAX_ROWS, rows -> {
+            if (isDestroyed()) {
+                return;
             }
-            cursor.close();
-        } catch (Exception e) {
-            XLog.e("ERROR: getSearchHistory");
-        }
 
-        return data;
+            // 删除最后一条后也要提交空列表，清掉已删除的行
+            mSearchHistoryAdapter.submitList(rows);
+            if (!rows.isEmpty()) {
+                mHistoryLayout.setVisibility(View.VISIBLE);
+            }
+        });
     }
 
     // 记录请求的位置信息
     private void recordCurrentLocation(double lng, double lat) {
         //参数坐标系：bd09
         final String ak = sharedPreferences.getString("setting_map_key", BuildConfig.MAPS_API_KEY);
-        double[] latLng = MapUtils.bd2wgs(lng, lat);
+        double[] latLng = MapUtils.bd2wgsExact(lng, lat);
         //bd09坐标的位置信息
         String mapApiUrl = "https://api.map.baidu.com/reverse_geocoding/v3/?ak=" + ak + "&output=json&coordtype=bd09ll" + "&location=" + lat + "," + lng;
 
@@ -1361,13 +1432,13 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 //插表参数
                 ContentValues contentValues = new ContentValues();
                 contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, mMarkName);
-                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
                 contentValues.put(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
-                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, Double.toString(lng));
-                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, Double.toString(lat));
+                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, lng);
+                contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, lat);
 
-                DataBaseHistoryLocation.saveHistoryLocation(mLocationHistoryDB, contentValues);
+                mHistoryRepository.saveLocation(contentValues);
             }
 
             @Override
@@ -1383,33 +1454,33 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                             String formatted_address = posInfoJson.getString("formatted_address");
                             ContentValues contentValues = new ContentValues();
                             contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, formatted_address);
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
                             contentValues.put(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, Double.toString(lng));
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, Double.toString(lat));
-                            DataBaseHistoryLocation.saveHistoryLocation(mLocationHistoryDB, contentValues);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, lng);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, lat);
+                            mHistoryRepository.saveLocation(contentValues);
                         } else {
                             ContentValues contentValues = new ContentValues();
                             contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, mMarkName == null ? getRetJson.getString("message"): mMarkName);
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
                             contentValues.put(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, Double.toString(lng));
-                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, Double.toString(lat));
-                            DataBaseHistoryLocation.saveHistoryLocation(mLocationHistoryDB, contentValues);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, lng);
+                            contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, lat);
+                            mHistoryRepository.saveLocation(contentValues);
                         }
                     } catch (JSONException e) {
                         XLog.e("JSON: resolve json error");
                         ContentValues contentValues = new ContentValues();
                         contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, mMarkName == null ? getResources().getString(R.string.history_location_default_name) : mMarkName);
                         contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LOCATION, mMarkName);
-                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
                         contentValues.put(DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
-                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, Double.toString(lng));
-                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, Double.toString(lat));
-                        DataBaseHistoryLocation.saveHistoryLocation(mLocationHistoryDB, contentValues);
+                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LONGITUDE_CUSTOM, lng);
+                        contentValues.put(DataBaseHistoryLocation.DB_COLUMN_LATITUDE_CUSTOM, lat);
+                        mHistoryRepository.saveLocation(contentValues);
                     }
                 }
             }
@@ -1422,53 +1493,54 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
         mHistoryLayout = findViewById(R.id.search_history_linear);
 
         mSearchList = findViewById(R.id.search_list_view);
-        mSearchList.setOnItemClickListener((parent, view, position, id) -> {
-            String lng = ((TextView) view.findViewById(R.id.poi_longitude)).getText().toString();
-            String lat = ((TextView) view.findViewById(R.id.poi_latitude)).getText().toString();
-            mMarkName = ((TextView) view.findViewById(R.id.poi_name)).getText().toString();
-            mMarkLatLngMap = new LatLng(Double.parseDouble(lat), Double.parseDouble(lng));
+        mSearchList.setLayoutManager(new LinearLayoutManager(this));
+        mSearchList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        mSuggestionAdapter = new SuggestionAdapter(this);
+        mSuggestionAdapter.setOnItemClickListener((view, info) -> {
+            mMarkName = info.key;
+            mMarkLatLngMap = new LatLng(info.pt.latitude, info.pt.longitude);
             MapStatusUpdate mapstatusupdate = MapStatusUpdateFactory.newLatLng(mMarkLatLngMap);
             mBaiduMap.setMapStatus(mapstatusupdate);
 
             markMap();
 
-            double[] latLng = MapUtils.bd2wgs(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
+            double[] latLng = MapUtils.bd2wgsExact(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
 
             // mSearchList.setVisibility(View.GONE);
             //搜索历史 插表参数
             ContentValues contentValues = new ContentValues();
             contentValues.put(DataBaseHistorySearch.DB_COLUMN_KEY, mMarkName);
-            contentValues.put(DataBaseHistorySearch.DB_COLUMN_DESCRIPTION, ((TextView) view.findViewById(R.id.poi_address)).getText().toString());
+            contentValues.put(DataBaseHistorySearch.DB_COLUMN_DESCRIPTION, SuggestionAdapter.getAddress(info));
             contentValues.put(DataBaseHistorySearch.DB_COLUMN_IS_LOCATION, DataBaseHistorySearch.DB_SEARCH_TYPE_RESULT);
-            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM, lng);
-            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM, lat);
-            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM, mMarkLatLngMap.longitude);
+            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM, mMarkLatLngMap.latitude);
+            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+            contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
             contentValues.put(DataBaseHistorySearch.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
 
-            DataBaseHistorySearch.saveHistorySearch(mSearchHistoryDB, contentValues);
+            mHistoryRepository.saveSearch(contentValues);
             mSearchLayout.setVisibility(View.INVISIBLE);
             searchItem.collapseActionView();
         });
+        mSearchList.setAdapter(mSuggestionAdapter);
         //搜索历史列表的点击监听
         mSearchHistoryList = findViewById(R.id.search_history_list_view);
-        mSearchHistoryList.setOnItemClickListener((parent, view, position, id) -> {
-            String searchDescription = ((TextView) view.findViewById(R.id.search_description)).getText().toString();
-            String searchKey = ((TextView) view.findViewById(R.id.search_key)).getText().toString();
-            String searchIsLoc = ((TextView) view.findViewById(R.id.search_isLoc)).getText().toString();
+        mSearchHistoryList.setLayoutManager(new LinearLayoutManager(this));
+        mSearchHistoryList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        mSearchHistoryAdapter = new SearchHistoryAdapter(this);
+        mSearchHistoryAdapter.setOnItemClickListener((view, row) -> {
+            String searchDescription = row.description;
+            String searchKey = row.key;
 
             //如果是定位搜索
-            if (searchIsLoc.equals("1")) {
-                String lng = ((TextView) view.findViewById(R.id.search_longitude)).getText().toString();
-                String lat = ((TextView) view.findViewById(R.id.search_latitude)).getText().toString();
-                // mMarkName = ((TextView) view.findViewById(R.id.poi_name)).getText().toString();
-                mMarkLatLngMap = new LatLng(Double.parseDouble(lat), Double.parseDouble(lng));
+            if (row.type == DataBaseHistorySearch.DB_SEARCH_TYPE_RESULT) {
+                mMarkLatLngMap = new LatLng(row.bdLat, row.bdLng);
                 MapStatusUpdate mapstatusupdate = MapStatusUpdateFactory.newLatLng(mMarkLatLngMap);
                 mBaiduMap.setMapStatus(mapstatusupdate);
 
                 markMap();
 
-                double[] latLng = MapUtils.bd2wgs(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
+                double[] latLng = MapUtils.bd2wgsExact(mMarkLatLngMap.longitude, mMarkLatLngMap.latitude);
 
                 //设置列表不可见
                 mHistoryLayout.setVisibility(View.INVISIBLE);
@@ -1478,14 +1550,14 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 contentValues.put(DataBaseHistorySearch.DB_COLUMN_KEY, searchKey);
                 contentValues.put(DataBaseHistorySearch.DB_COLUMN_DESCRIPTION, searchDescription);
                 contentValues.put(DataBaseHistorySearch.DB_COLUMN_IS_LOCATION, DataBaseHistorySearch.DB_SEARCH_TYPE_RESULT);
-                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM, lng);
-                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM, lat);
-                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_WGS84, String.valueOf(latLng[0]));
-                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_WGS84, String.valueOf(latLng[1]));
+                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM, mMarkLatLngMap.longitude);
+                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM, mMarkLatLngMap.latitude);
+                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LONGITUDE_WGS84, latLng[0]);
+                contentValues.put(DataBaseHistorySearch.DB_COLUMN_LATITUDE_WGS84, latLng[1]);
                 contentValues.put(DataBaseHistorySearch.DB_COLUMN_TIMESTAMP, System.currentTimeMillis() / 1000);
 
-                DataBaseHistorySearch.saveHistorySearch(mSearchHistoryDB, contentValues);
-            } else if (searchIsLoc.equals("0")) { //如果仅仅是搜索
+                mHistoryRepository.saveSearch(contentValues);
+            } else if (row.type == DataBaseHistorySearch.DB_SEARCH_TYPE_KEY) { //如果仅仅是搜索
                 try {
                     searchView.setQuery(searchKey, true);
                 } catch (Exception e) {
@@ -1496,38 +1568,23 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                 XLog.e(getResources().getString(R.string.app_error_param));
             }
         });
-        mSearchHistoryList.setOnItemLongClickListener((parent, view, position, id) -> {
+        mSearchHistoryAdapter.setOnItemLongClickListener((view, row) -> {
             new AlertDialog.Builder(MainActivity.this)
                     .setTitle("警告")//这里是表头的内容
                     .setMessage("确定要删除该项搜索记录吗?")//这里是中间显示的具体信息
                     .setPositiveButton("确定",(dialog, which) -> {
-                        String searchKey = ((TextView) view.findViewById(R.id.search_key)).getText().toString();
-
-                        try {
-                            mSearchHistoryDB.delete(DataBaseHistorySearch.TABLE_NAME, DataBaseHistorySearch.DB_COLUMN_KEY + " = ?", new String[] {searchKey});
-                            //删除成功
-                            //展示搜索历史
-                            List<Map<String, Object>> data = getSearchHistory();
-
-                            if (!data.isEmpty()) {
-                                SimpleAdapter simAdapt = new SimpleAdapter(
-                                        MainActivity.this,
-                                        data,
-                                        R.layout.search_item,
-                                        new String[] {DataBaseHistorySearch.DB_COLUMN_KEY,
-                                                DataBaseHistorySearch.DB_COLUMN_DESCRIPTION,
-                                                DataBaseHistorySearch.DB_COLUMN_TIMESTAMP,
-                                                DataBaseHistorySearch.DB_COLUMN_IS_LOCATION,
-                                                DataBaseHistorySearch.DB_COLUMN_LONGITUDE_CUSTOM,
-                                                DataBaseHistorySearch.DB_COLUMN_LATITUDE_CUSTOM}, // 与下面数组元素要一一对应
-                                        new int[] {R.id.search_key, R.id.search_description, R.id.search_timestamp, R.id.search_isLoc, R.id.search_longitude, R.id.search_latitude});
-                                mSearchHistoryList.setAdapter(simAdapt);
-                                mHistoryLayout.setVisibility(View.VISIBLE);
+                        mHistoryRepository.deleteSearch(row.key, deleteRet -> {
+                            if (isDestroyed()) {
+                                return;
                             }
-                        } catch (Exception e) {
-                            XLog.e("ERROR: delete database error");
-                            GoUtils.DisplayToast(MainActivity.this,getResources().getString(R.string.history_delete_error));
-                        }
+                            if (deleteRet) {
+                                //删除成功
+                                //展示搜索历史
+                                showSearchHistory();
+                            } else {
+                                GoUtils.DisplayToast(MainActivity.this,getResources().getString(R.string.history_delete_error));
+                            }
+                        });
                     })
                     .setNegativeButton("取消",
                             (dialog, which) -> {
@@ -1535,47 +1592,20 @@ public class MainActivity extends BaseActivity implements SensorEventListener {
                     .show();
             return true;
         });
+        mSearchHistoryList.setAdapter(mSearchHistoryAdapter);
         //设置搜索建议返回值监听
         mSuggestionSearch = SuggestionSearch.newInstance();
         mSuggestionSearch.setOnGetSuggestionResultListener(suggestionResult -> {
             if (suggestionResult == null || suggestionResult.getAllSuggestions() == null) {
                 GoUtils.DisplayToast(this,getResources().getString(R.string.app_search_null));
             } else {
-                List<Map<String, Object>> data = getMapList(suggestionResult);
-
-                SimpleAdapter simAdapt = new SimpleAdapter(
-                        MainActivity.this,
-                        data,
-                        R.layout.search_poi_item,
-                        new String[] {POI_NAME, POI_ADDRESS, POI_LONGITUDE, POI_LATITUDE}, // 与下面数组元素要一一对应
-                        new int[] {R.id.poi_name, R.id.poi_address, R.id.poi_longitude, R.id.poi_latitude});
-                mSearchList.setAdapter(simAdapt);
+                mSuggestionAdapter.setSuggestions(suggestionResult.getAllSuggestions());
                 // mSearchList.setVisibility(View.VISIBLE);
                 mSearchLayout.setVisibility(View.VISIBLE);
             }
         });
     }
 
-    @NonNull
-    private static List<Map<String, Object>> getMapList(SuggestionResult suggestionResult) {
-        List<Map<String, Object>> data = new ArrayList<>();
-        int retCnt = suggestionResult.getAllSuggestions().size();
-
-        for (int i = 0; i < retCnt; i++) {
-            if (suggestionResult.getAllSuggestions().get(i).pt == null) {
-                continue;
-            }
-
-            Map<String, Object> poiItem = new HashMap<>();
-            poiItem.put(POI_NAME, suggestionResult.getAllSuggestions().get(i).key);
-            poiItem.put(POI_ADDRESS, suggestionResult.getAllSuggestions().get(i).city + " " + suggestionResult.getAllSuggestions().get(i).district);
-            poiItem.put(POI_LONGITUDE, "" + suggestionResult.getAllSuggestions().get(i).pt.longitude);
-            poiItem.put(POI_LATITUDE, "" + suggestionResult.getAllSuggestions().get(i).pt.latitude);
-            data.add(poiItem);
-        }
-        return data;
-    }
-
     /*============================== 更新 相关 ==============================*/
     private void initUpdateVersion() {
         mDownloadManager =(DownloadManager) MainActivity.this.getSystemService(DOWNLOAD_SERVICE);
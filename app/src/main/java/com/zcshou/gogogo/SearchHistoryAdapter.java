@@ -0,0 +1,103 @@
+package com.zcshou.gogogo;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.zcshou.database.HistoryRepository;
+
+import java.util.Objects;
+
+/**
+ * 搜索历史列表
+ * <p>
+ * 以记录 ID 作为稳定 ID，删除一条或重新读取后只更新变化的行
+ */
+public class SearchHistoryAdapter extends ListAdapter<HistoryRepository.SearchRow, SearchHistoryAdapter.ViewHolder> {
+    private final LayoutInflater mInflater;
+    private OnItemClickListener mClickListener;
+    private OnItemLongClickListener mLongClickListener;
+
+    public interface OnItemClickListener {
+        void onItemClick(View view, HistoryRepository.SearchRow row);
+    }
+
+    public interface OnItemLongClickListener {
+        boolean onItemLongClick(View view, HistoryRepository.SearchRow row);
+    }
+
+    private static final DiffUtil.ItemCallback<HistoryRepository.SearchRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryRepository.SearchRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryRepository.SearchRow oldRow, @NonNull HistoryRepository.SearchRow newRow) {
+            return oldRow.id == newRow.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryRepository.SearchRow oldRow, @NonNull HistoryRepository.SearchRow newRow) {
+            // 只比较显示的内容，点击时读取的是新列表中的对象
+            return Objects.equals(oldRow.key, newRow.key) && Objects.equals(oldRow.description, newRow.description);
+        }
+    };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView key;
+        final TextView description;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            key = itemView.findViewById(R.id.search_key);
+            description = itemView.findViewById(R.id.search_description);
+        }
+    }
+
+    public SearchHistoryAdapter(Context context) {
+        super(DIFF_CALLBACK);
+        mInflater = LayoutInflater.from(context);
+        setHasStableIds(true);
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        mClickListener = listener;
+    }
+
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        mLongClickListener = listener;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ViewHolder holder = new ViewHolder(mInflater.inflate(R.layout.search_item, parent, false));
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (mClickListener != null && position != RecyclerView.NO_POSITION) {
+                mClickListener.onItemClick(v, getItem(position));
+            }
+        });
+        holder.itemView.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            return mLongClickListener != null && position != RecyclerView.NO_POSITION
+                    && mLongClickListener.onItemLongClick(v, getItem(position));
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        HistoryRepository.SearchRow row = getItem(position);
+        holder.key.setText(row.key);
+        holder.description.setText(row.description);
+    }
+}
@@ -0,0 +1,102 @@
+package com.zcshou.gogogo;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.baidu.mapapi.search.sug.SuggestionResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 地点搜索建议列表，MainActivity 和摇杆的地图窗口共用
+ * <p>
+ * 每次输入都会返回一组新的建议，交给 ListAdapter 在后台比较，前后两次都有的地点不会重新绑定。
+ * 建议没有数据库 ID，以名称和坐标判断是否为同一地点。
+ */
+public class SuggestionAdapter extends ListAdapter<SuggestionResult.SuggestionInfo, SuggestionAdapter.ViewHolder> {
+    private final LayoutInflater mInflater;
+    private OnItemClickListener mClickListener;
+
+    public interface OnItemClickListener {
+        void onItemClick(View view, SuggestionResult.SuggestionInfo info);
+    }
+
+    private static final DiffUtil.ItemCallback<SuggestionResult.SuggestionInfo> DIFF_CALLBACK = new DiffUtil.ItemCallback<SuggestionResult.SuggestionInfo>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SuggestionResult.SuggestionInfo oldInfo, @NonNull SuggestionResult.SuggestionInfo newInfo) {
+            return Objects.equals(oldInfo.key, newInfo.key)
+                    && Double.compare(oldInfo.pt.longitude, newInfo.pt.longitude) == 0
+                    && Double.compare(oldInfo.pt.latitude, newInfo.pt.latitude) == 0;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SuggestionResult.SuggestionInfo oldInfo, @NonNull SuggestionResult.SuggestionInfo newInfo) {
+            return Objects.equals(oldInfo.city, newInfo.city) && Objects.equals(oldInfo.district, newInfo.district);
+        }
+    };
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView name;
+        final TextView address;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            name = itemView.findViewById(R.id.poi_name);
+            address = itemView.findViewById(R.id.poi_address);
+        }
+    }
+
+    public SuggestionAdapter(Context context) {
+        super(DIFF_CALLBACK);
+        mInflater = LayoutInflater.from(context);
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        mClickListener = listener;
+    }
+
+    // 没有坐标的建议无法定位，不显示
+    public void setSuggestions(List<SuggestionResult.SuggestionInfo> suggestions) {
+        List<SuggestionResult.SuggestionInfo> list = new ArrayList<>(suggestions.size());
+        for (SuggestionResult.SuggestionInfo info : suggestions) {
+            if (info.pt != null) {
+                list.add(info);
+            }
+        }
+        submitList(list);
+    }
+
+    public static String getAddress(SuggestionResult.SuggestionInfo info) {
+        return info.city + " " + info.district;
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ViewHolder holder = new ViewHolder(mInflater.inflate(R.layout.search_poi_item, parent, false));
+        holder.itemView.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (mClickListener != null && position != RecyclerView.NO_POSITION) {
+                mClickListener.onItemClick(v, getItem(position));
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        SuggestionResult.SuggestionInfo info = getItem(position);
+        holder.name.setText(info.key);
+        holder.address.setText(getAddress(info));
+    }
+}
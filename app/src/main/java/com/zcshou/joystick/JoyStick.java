@@ -4,8 +4,6 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.PixelFormat;
 import android.text.TextUtils;
 import android.util.AttributeSet;
@@ -18,13 +16,15 @@ import android.view.WindowManager;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
-import android.widget.ListView;
-import android.widget.SimpleAdapter;
 import android.widget.TextView;
 import android.widget.SearchView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.preference.PreferenceManager;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.baidu.mapapi.map.BaiduMap;
 import com.baidu.mapapi.map.MapPoi;
@@ -36,8 +36,9 @@ import com.baidu.mapapi.map.MyLocationData;
 import com.baidu.mapapi.model.LatLng;
 import com.baidu.mapapi.search.sug.SuggestionSearch;
 import com.baidu.mapapi.search.sug.SuggestionSearchOption;
-import com.zcshou.database.DataBaseHistoryLocation;
-import com.zcshou.gogogo.HistoryActivity;
+import com.zcshou.database.HistoryRepository;
+import com.zcshou.gogogo.HistoryAdapter;
+import com.zcshou.gogogo.SuggestionAdapter;
 import com.zcshou.gogogo.MainActivity;
 import com.zcshou.gogogo.R;
 import com.zcshou.utils.GoUtils;
@@ -49,12 +50,7 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class JoyStick extends View {
     private static final int DivGo = 1000;    /* 移动的时间间隔，单位 ms */
@@ -89,17 +85,23 @@ public class JoyStick extends View {
     private final SharedPreferences sharedPreferences;
     /* 历史记录悬浮窗相关 */
     private FrameLayout mHistoryLayout;
-    private final List<Map<String, Object>> mAllRecord = new ArrayList<> ();
     private TextView noRecordText;
-    private ListView mRecordListView;
+    private RecyclerView mRecordListView;
+    private HistoryAdapter mRecordAdapter;
+    private HistoryRepository.LocationRow mLastRow;     /* 已加载的最后一条，下一页从它之后开始 */
+    private boolean isLoading = false;
+    private boolean isLoadedAll = false;
+    private int mSearchVersion = 0;                     /* 搜索内容变化时递增 */
     /* 地图悬浮窗相关 */
     private FrameLayout mMapLayout;
     private MapView mMapView;
     private BaiduMap mBaiduMap;
     private LatLng mCurMapLngLat;
+    private final double[] mMapLngLat = new double[2];     /* 每次位置更新时复用的转换缓冲区 */
     private LatLng mMarkMapLngLat;
     private SuggestionSearch mSuggestionSearch;
-    private ListView mSearchList;
+    private RecyclerView mSearchList;
+    private SuggestionAdapter mSuggestionAdapter;
     private LinearLayout mSearchLayout;
 
     public JoyStick(Context context) {
@@ -160,8 +162,8 @@ public class JoyStick extends View {
     }
 
     public void setCurrentPosition(double lng, double lat, double alt) {
-        double[] lngLat = MapUtils.wgs2bd09(lng, lat);
-        mCurMapLngLat = new LatLng(lngLat[1], lngLat[0]);
+        MapUtils.wgs2bd09Grid(lng, lat, mMapLngLat);
+        mCurMapLngLat = new LatLng(mMapLngLat[1], mMapLngLat[0]);
         mAltitude = alt;
 
         resetBaiduMap();
@@ -272,7 +274,7 @@ public class JoyStick extends View {
                 // 注意：这里的 x y 与 圆中角度的对应问题（以 X 轴正向为 0 度）且转换为 km
                 disLng = mSpeed * (double)(DivGo / 1000) * mR * Math.cos(mAngle * 2 * Math.PI / 360) / 1000;// 注意安卓中的三角函数使用的是弧度
                 disLat = mSpeed * (double)(DivGo / 1000) * mR * Math.sin(mAngle * 2 * Math.PI / 360) / 1000;// 注意安卓中的三角函数使用的是弧度
-                mListener.onMoveInfo(mSpeed, disLng, disLat, 90.0F-mAngle);
+                mListener.onMoveInfo(mSpeed * mR, disLng, disLat, 90.0F-mAngle);
                 mTimer.start();
             }
         });
@@ -338,7 +340,7 @@ public class JoyStick extends View {
                 // 注意：这里的 x y 与 圆中角度的对应问题（以 X 轴正向为 0 度）且转换为 km
                 disLng = mSpeed * (double)(DivGo / 1000) * mR * Math.cos(mAngle * 2 * Math.PI / 360) / 1000;// 注意安卓中的三角函数使用的是弧度
                 disLat = mSpeed * (double)(DivGo / 1000) * mR * Math.sin(mAngle * 2 * Math.PI / 360) / 1000;// 注意安卓中的三角函数使用的是弧度
-                mListener.onMoveInfo(mSpeed, disLng, disLat, 90.0F-mAngle);
+                mListener.onMoveInfo(mSpeed * mR, disLng, disLat, 90.0F-mAngle);
             }
         }
     }
@@ -388,45 +390,25 @@ public class JoyStick extends View {
         mMapLayout.setOnTouchListener(new JoyStickOnTouchListener());
 
         mSearchList = mMapLayout.findViewById(R.id.map_search_list_view);
+        mSearchList.setLayoutManager(new LinearLayoutManager(mContext));
+        mSearchList.addItemDecoration(new DividerItemDecoration(mContext, DividerItemDecoration.VERTICAL));
+        mSuggestionAdapter = new SuggestionAdapter(mContext);
+        mSuggestionAdapter.setOnItemClickListener((view, info) -> {
+            mSearchLayout.setVisibility(View.GONE);
+
+            markBaiduMap(new LatLng(info.pt.latitude, info.pt.longitude));
+        });
+        mSearchList.setAdapter(mSuggestionAdapter);
         mSearchLayout = mMapLayout.findViewById(R.id.map_search_linear);
         mSuggestionSearch = SuggestionSearch.newInstance();
         mSuggestionSearch.setOnGetSuggestionResultListener(suggestionResult -> {
             if (suggestionResult == null || suggestionResult.getAllSuggestions() == null) {
                 GoUtils.DisplayToast(mContext,getResources().getString(R.string.app_search_null));
             } else {
-                List<Map<String, Object>> data = new ArrayList<>();
-                int retCnt = suggestionResult.getAllSuggestions().size();
-
-                for (int i = 0; i < retCnt; i++) {
-                    if (suggestionResult.getAllSuggestions().get(i).pt == null) {
-                        continue;
-                    }
-
-                    Map<String, Object> poiItem = new HashMap<>();
-                    poiItem.put(MainActivity.POI_NAME, suggestionResult.getAllSuggestions().get(i).key);
-                    poiItem.put(MainActivity.POI_ADDRESS, suggestionResult.getAllSuggestions().get(i).city + " " + suggestionResult.getAllSuggestions().get(i).district);
-                    poiItem.put(MainActivity.POI_LONGITUDE, "" + suggestionResult.getAllSuggestions().get(i).pt.longitude);
-                    poiItem.put(MainActivity.POI_LATITUDE, "" + suggestionResult.getAllSuggestions().get(i).pt.latitude);
-                    data.add(poiItem);
-                }
-
-                SimpleAdapter simAdapt = new SimpleAdapter(
-                        mContext,
-                        data,
-                        R.layout.search_poi_item,
-                        new String[] {MainActivity.POI_NAME, MainActivity.POI_ADDRESS, MainActivity.POI_LONGITUDE, MainActivity.POI_LATITUDE}, // 与下面数组元素要一一对应
-                        new int[] {R.id.poi_name, R.id.poi_address, R.id.poi_longitude, R.id.poi_latitude});
-                mSearchList.setAdapter(simAdapt);
+                mSuggestionAdapter.setSuggestions(suggestionResult.getAllSuggestions());
                 mSearchLayout.setVisibility(View.VISIBLE);
             }
         });
-        mSearchList.setOnItemClickListener((parent, view, position, id) -> {
-            mSearchLayout.setVisibility(View.GONE);
-
-            String lng = ((TextView) view.findViewById(R.id.poi_longitude)).getText().toString();
-            String lat = ((TextView) view.findViewById(R.id.poi_latitude)).getText().toString();
-            markBaiduMap(new LatLng(Double.parseDouble(lat), Double.parseDouble(lng)));
-        });
 
         TextView tips = mMapLayout.findViewById(R.id.joystick_map_tips);
         SearchView mSearchView = mMapLayout.findViewById(R.id.joystick_map_searchView);
@@ -494,7 +476,7 @@ public class JoyStick extends View {
                     mCurMapLngLat = mMarkMapLngLat;
                     mMarkMapLngLat = null;
 
-                    double[] lngLat = MapUtils.bd2wgs(mCurMapLngLat.longitude, mCurMapLngLat.latitude);
+                    double[] lngLat = MapUtils.bd2wgsExact(mCurMapLngLat.longitude, mCurMapLngLat.latitude);
                     mListener.onPositionInfo(lngLat[0], lngLat[1], mAltitude);
 
                     resetBaiduMap();
@@ -525,6 +507,27 @@ public class JoyStick extends View {
         btnBack.setOnClickListener(v -> resetBaiduMap());
         btnBack.setColorFilter(getResources().getColor(R.color.colorAccent, mContext.getTheme()));
 
+        // 切换到历史记录窗口，列出地图中心附近的历史位置
+        ImageButton btnNearby = mMapLayout.findViewById(R.id.btnNearby);
+        btnNearby.setOnClickListener(v -> {
+            LatLng center = mBaiduMap.getMapStatus().target;
+
+            // 关闭时清除焦点
+            mWindowParamCurrent.flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                    | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
+                    | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+
+            tips.setVisibility(VISIBLE);
+            mSearchLayout.setVisibility(GONE);
+            mSearchView.clearFocus();
+            mSearchView.onActionViewCollapsed();
+
+            mCurWin = WINDOW_TYPE_HISTORY;
+            show();
+            showNearbyHistory(center.longitude, center.latitude);
+        });
+        btnNearby.setColorFilter(getResources().getColor(R.color.colorAccent, mContext.getTheme()));
+
         initBaiduMap();
     }
 
@@ -638,22 +641,24 @@ public class JoyStick extends View {
 
             @Override
             public boolean onQueryTextChange(String newText) {// 当搜索内容改变时触发该方法
+                // 输入变化后，之前还未返回的查询结果不再显示
+                final int version = ++mSearchVersion;
                 if (TextUtils.isEmpty(newText)) {
-                    showHistory(mAllRecord);
+                    showHistory(null);
                 } else {
-                    List<Map<String, Object>> searchRet = new ArrayList<>();
-                    for (int i = 0; i < mAllRecord.size(); i++){
-                        if (mAllRecord.get(i).toString().indexOf(newText) > 0){
-                            searchRet.add(mAllRecord.get(i));
+                    // 在全部记录的全文索引中查找，不限于已加载的几页
+                    HistoryRepository.getInstance(mContext).searchLocations(newText, HistoryRepository.PAGE_SIZE, rows -> {
+                        if (version != mSearchVersion) {
+                            return;
                         }
-                    }
 
-                    if (searchRet.size() > 0) {
-                        showHistory(searchRet);
-                    } else {
-                        GoUtils.DisplayToast(mContext, getResources().getString(R.string.app_search_null));
-                        showHistory(mAllRecord);
-                    }
+                        if (rows.size() > 0) {
+                            showHistory(rows);
+                        } else {
+                            GoUtils.DisplayToast(mContext, getResources().getString(R.string.app_search_null));
+                            showHistory(null);
+                        }
+                    });
                 }
 
                 return false;
@@ -662,7 +667,12 @@ public class JoyStick extends View {
 
         noRecordText = mHistoryLayout.findViewById(R.id.joystick_his_record_no_textview);
         mRecordListView = mHistoryLayout.findViewById(R.id.joystick_his_record_list_view);
-        mRecordListView.setOnItemClickListener((adapterView, view, i, l) -> {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(mContext);
+        mRecordListView.setLayoutManager(layoutManager);
+        mRecordListView.addItemDecoration(new DividerItemDecoration(mContext, DividerItemDecoration.VERTICAL));
+
+        mRecordAdapter = new HistoryAdapter(mContext);
+        mRecordAdapter.setOnItemClickListener((view, row) -> {
             // 关闭时清除焦点
             mWindowParamCurrent.flags = WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
                     | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL
@@ -674,28 +684,28 @@ public class JoyStick extends View {
             tips.setVisibility(VISIBLE);
 
             // wgs84坐标
-            String wgs84LatLng = (String) ((TextView) view.findViewById(R.id.WGSLatLngText)).getText();
-            wgs84LatLng = wgs84LatLng.substring(wgs84LatLng.indexOf('[') + 1, wgs84LatLng.indexOf(']'));
-            String[] wgs84latLngStr = wgs84LatLng.split(" ");
-            String wgs84Longitude = wgs84latLngStr[0].substring(wgs84latLngStr[0].indexOf(':') + 1);
-            String wgs84Latitude = wgs84latLngStr[1].substring(wgs84latLngStr[1].indexOf(':') + 1);
-
-            mListener.onPositionInfo(Double.parseDouble(wgs84Longitude), Double.parseDouble(wgs84Latitude), mAltitude);
+            mListener.onPositionInfo(row.wgsLng, row.wgsLat, mAltitude);
 
             // 注意这里在选择位置之后需要刷新地图
-            String bdLatLng = (String) ((TextView) view.findViewById(R.id.BDLatLngText)).getText();
-            bdLatLng = bdLatLng.substring(bdLatLng.indexOf('[') + 1, bdLatLng.indexOf(']'));
-            String[] bdLatLngStr = bdLatLng.split(" ");
-            String bdLongitude = bdLatLngStr[0].substring(bdLatLngStr[0].indexOf(':') + 1);
-            String bdLatitude = bdLatLngStr[1].substring(bdLatLngStr[1].indexOf(':') + 1);
-            mCurMapLngLat = new LatLng(Double.parseDouble(bdLatitude), Double.parseDouble(bdLongitude));
+            mCurMapLngLat = new LatLng(row.bdLat, row.bdLng);
 
             GoUtils.DisplayToast(mContext, getResources().getString(R.string.app_location_ok));
         });
+        mRecordListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // 显示搜索结果时不继续读取
+                int totalItemCount = mRecordAdapter.getItemCount();
+                if (mRecordAdapter.isShowingAll() && totalItemCount > 0
+                        && layoutManager.findLastVisibleItemPosition() + 1 >= totalItemCount) {
+                    fetchRecordPage();
+                }
+            }
+        });
+        mRecordListView.setAdapter(mRecordAdapter);
 
-        fetchAllRecord();
-
-        showHistory(mAllRecord);
+        showHistory(null);
+        fetchRecordPage();
 
         ImageButton btnClose = mHistoryLayout.findViewById(R.id.joystick_his_close);
         btnClose.setOnClickListener(v -> {
@@ -713,68 +723,65 @@ public class JoyStick extends View {
         });
     }
 
-    private void fetchAllRecord() {
-        SQLiteDatabase mHistoryLocationDB;
+    // 在后台读取下一页历史记录，读取完成后追加到列表
+    private void fetchRecordPage() {
+        if (isLoading || isLoadedAll) {
+            return;
+        }
+
+        isLoading = true;
+        HistoryRepository.getInstance(mContext).loadLocations(mLastRow, HistoryRepository.PAGE_SIZE, rows -> {
+            isLoading = false;
+            isLoadedAll = rows.size() < HistoryRepository.PAGE_SIZE;
+            mRecordAdapter.addRows(rows);
+            if (!rows.isEmpty()) {
+                mLastRow = rows.get(rows.size() - 1);
+            }
+
+            if (mRecordAdapter.isShowingAll()) {
+                showHistory(null);
+            }
+        });
+    }
+
+    private void showNearbyHistory(double bdLng, double bdLat) {
+        // 历史记录按 WGS84 坐标建立索引
+        double[] wgs = new double[2];
+        MapUtils.bd2wgsGrid(bdLng, bdLat, wgs);
+        final int version = ++mSearchVersion;
+        HistoryRepository.getInstance(mContext).nearbyLocations(wgs[0], wgs[1],
+                HistoryRepository.NEARBY_RADIUS, HistoryRepository.PAGE_SIZE, rows -> {
+            if (version != mSearchVersion) {
+                return;
+            }
 
+            if (rows.size() > 0) {
+                showHistory(rows);
+            } else {
+                GoUtils.DisplayToast(mContext, getResources().getString(R.string.history_nearby_idle));
+                showHistory(null);
+            }
+        });
+    }
+
+    // rows 为 null 时显示已读取的全部记录，否则显示搜索或附近查询的结果
+    private void showHistory(List<HistoryRepository.LocationRow> rows) {
         try {
-            DataBaseHistoryLocation hisLocDBHelper = new DataBaseHistoryLocation(mContext.getApplicationContext());
-            mHistoryLocationDB = hisLocDBHelper.getWritableDatabase();
-
-            Cursor cursor = mHistoryLocationDB.query(DataBaseHistoryLocation.TABLE_NAME, null,
-                    DataBaseHistoryLocation.DB_COLUMN_ID + " > ?", new String[] {"0"},
-                    null, null, DataBaseHistoryLocation.DB_COLUMN_TIMESTAMP + " DESC", null);
-
-            while (cursor.moveToNext()) {
-                Map<String, Object> item = new HashMap<>();
-                int ID = cursor.getInt(0);
-                String Location = cursor.getString(1);
-                String Longitude = cursor.getString(2);
-                String Latitude = cursor.getString(3);
-                long TimeStamp = cursor.getInt(4);
-                String BD09Longitude = cursor.getString(5);
-                String BD09Latitude = cursor.getString(6);
-                Log.d("TB", ID + "\t" + Location + "\t" + Longitude + "\t" + Latitude + "\t" + TimeStamp + "\t" + BD09Longitude + "\t" + BD09Latitude);
-                BigDecimal bigDecimalLongitude = BigDecimal.valueOf(Double.parseDouble(Longitude));
-                BigDecimal bigDecimalLatitude = BigDecimal.valueOf(Double.parseDouble(Latitude));
-                BigDecimal bigDecimalBDLongitude = BigDecimal.valueOf(Double.parseDouble(BD09Longitude));
-                BigDecimal bigDecimalBDLatitude = BigDecimal.valueOf(Double.parseDouble(BD09Latitude));
-                double doubleLongitude = bigDecimalLongitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleLatitude = bigDecimalLatitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleBDLongitude = bigDecimalBDLongitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                double doubleBDLatitude = bigDecimalBDLatitude.setScale(11, RoundingMode.HALF_UP).doubleValue();
-                item.put(HistoryActivity.KEY_ID, Integer.toString(ID));
-                item.put(HistoryActivity.KEY_LOCATION, Location);
-                item.put(HistoryActivity.KEY_TIME, GoUtils.timeStamp2Date(Long.toString(TimeStamp)));
-                item.put(HistoryActivity.KEY_LNG_LAT_WGS, "[经度:" + doubleLongitude + " 纬度:" + doubleLatitude + "]");
-                item.put(HistoryActivity.KEY_LNG_LAT_CUSTOM, "[经度:" + doubleBDLongitude + " 纬度:" + doubleBDLatitude + "]");
-                mAllRecord.add(item);
+            if (rows == null) {
+                mRecordAdapter.showAll();
+            } else {
+                mRecordAdapter.showRows(rows);
             }
-            cursor.close();
-            mHistoryLocationDB.close();
         } catch (Exception e) {
-            Log.e("JOYSTICK", "ERROR - fetchAllRecord");
+            Log.e("JOYSTICK", "ERROR - showHistory");
         }
-    }
 
-    private void showHistory(List<Map<String, Object>> list) {
-        if (list.size() == 0) {
+        if (mRecordAdapter.isEmpty()) {
             mRecordListView.setVisibility(View.GONE);
             noRecordText.setVisibility(View.VISIBLE);
         } else {
             noRecordText.setVisibility(View.GONE);
             mRecordListView.setVisibility(View.VISIBLE);
-
-            try {
-                SimpleAdapter simAdapt = new SimpleAdapter(
-                        mContext,
-                        list,
-                        R.layout.history_item,
-                        new String[]{HistoryActivity.KEY_ID, HistoryActivity.KEY_LOCATION, HistoryActivity.KEY_TIME, HistoryActivity.KEY_LNG_LAT_WGS, HistoryActivity.KEY_LNG_LAT_CUSTOM}, // 与下面数组元素要一一对应
-                        new int[]{R.id.LocationID, R.id.LocationText, R.id.TimeText, R.id.WGSLatLngText, R.id.BDLatLngText});
-                mRecordListView.setAdapter(simAdapt);
-            } catch (Exception e) {
-                Log.e("JOYSTICK", "ERROR - showHistory");
-            }
         }
     }
 }
\ No newline at end of file
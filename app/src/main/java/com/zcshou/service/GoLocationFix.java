@@ -0,0 +1,50 @@
+package com.zcshou.service;
+
+import android.location.Criteria;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Bundle;
+
+/**
+ * 一个 provider 发送的模拟位置
+ * 不变的字段只在创建时设置一次，每次发送时在同一个 Location 上更新位置、方向、速度和时间，不分配新对象
+ * 只能在发送线程中使用
+ */
+final class GoLocationFix {
+    private final Location mLocation;
+
+    private GoLocationFix(Location location) {
+        mLocation = location;
+    }
+
+    static GoLocationFix gps() {
+        Location loc = new Location(LocationManager.GPS_PROVIDER);
+        loc.setAccuracy(Criteria.ACCURACY_FINE);    // 设定此位置的估计水平精度，以米为单位。
+        Bundle bundle = new Bundle();
+        bundle.putInt("satellites", 7);
+        loc.setExtras(bundle);
+        return new GoLocationFix(loc);
+    }
+
+    static GoLocationFix network() {
+        Location loc = new Location(LocationManager.NETWORK_PROVIDER);
+        loc.setAccuracy(Criteria.ACCURACY_COARSE);  // 设定此位置的估计水平精度，以米为单位。
+        return new GoLocationFix(loc);
+    }
+
+    /**
+     * @param timeMillis   本地时间（System.currentTimeMillis）
+     * @param elapsedNanos 开机时间（SystemClock.elapsedRealtimeNanos）
+     * @return 更新后的 Location，下次调用时会被覆盖
+     */
+    Location update(GoPosition pos, long timeMillis, long elapsedNanos) {
+        mLocation.setAltitude(pos.alt);                 // 设置高度，在 WGS 84 参考坐标系中的米
+        mLocation.setBearing(pos.bea);                  // 方向（度）
+        mLocation.setLatitude(pos.lat);                 // 纬度（度）
+        mLocation.setLongitude(pos.lng);                // 经度（度）
+        mLocation.setTime(timeMillis);                  // 本地时间
+        mLocation.setSpeed((float) pos.speed);
+        mLocation.setElapsedRealtimeNanos(elapsedNanos);
+        return mLocation;
+    }
+}
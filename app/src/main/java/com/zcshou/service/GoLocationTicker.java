@@ -0,0 +1,89 @@
+package com.zcshou.service;
+
+/**
+ * 模拟位置的发送节拍
+ * 只负责根据绝对时间计算下一次发送的时间点，不依赖 Handler，时间由调用方传入（SystemClock.uptimeMillis）
+ * 除 isIdle 和 getMissedCount 外，其余方法只能在发送线程中调用
+ */
+final class GoLocationTicker {
+    private final long mPeriod;             /* 正常发送周期，单位 ms */
+    private final long mIdlePeriod;         /* 静止时的保活周期，单位 ms */
+    private final long mIdleDelay;          /* 位置保持不变超过该时间后进入静止状态，单位 ms */
+    private final boolean isAdaptive;
+
+    private long mNextTime;
+    private long mLastMoveTime;
+    private GoPosition mLastPos;
+    private volatile boolean isIdle = false;
+    private volatile long mMissedCount = 0;
+
+    GoLocationTicker(long period, long idlePeriod, long idleDelay, boolean adaptive) {
+        mPeriod = period;
+        mIdlePeriod = idlePeriod;
+        mIdleDelay = idleDelay;
+        // 保活周期不长于正常周期时，自适应没有意义
+        isAdaptive = adaptive && idlePeriod > period;
+    }
+
+    /**
+     * 开始计时
+     * @return 第一次发送的时间点
+     */
+    long start(long now) {
+        mNextTime = now;
+        mLastMoveTime = now;
+        isIdle = false;
+        return mNextTime;
+    }
+
+    /**
+     * 完成一次发送后调用，计算下一次发送的时间点
+     * 使用绝对时间累加周期，发送本身的耗时不会累积到周期中；已经错过的周期直接跳过，不补发
+     * @param pos 本次发送的位置快照，每次更新都会产生新的快照，所以只需要比较引用
+     * @param now 当前时间
+     * @return 下一次发送的时间点
+     */
+    long next(GoPosition pos, long now) {
+        if (pos != mLastPos) {
+            mLastPos = pos;
+            mLastMoveTime = now;
+            isIdle = false;
+        } else if (isAdaptive && now - mLastMoveTime >= mIdleDelay) {
+            isIdle = true;
+        }
+
+        long period = isIdle ? mIdlePeriod : mPeriod;
+        mNextTime += period;
+
+        if (mNextTime <= now) {
+            long missed = (now - mNextTime) / period + 1;
+            mMissedCount += missed;
+            mNextTime += missed * period;
+        }
+
+        return mNextTime;
+    }
+
+    /**
+     * 位置变化后退出静止状态
+     * @return 立即发送的时间点，不在静止状态时返回 -1，节拍保持不变
+     */
+    long resume(long now) {
+        if (!isIdle) {
+            return -1;
+        }
+
+        isIdle = false;
+        mNextTime = now;
+        mLastMoveTime = now;
+        return mNextTime;
+    }
+
+    boolean isIdle() {
+        return isIdle;
+    }
+
+    long getMissedCount() {
+        return mMissedCount;
+    }
+}
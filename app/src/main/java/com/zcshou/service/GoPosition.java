@@ -0,0 +1,26 @@
+package com.zcshou.service;
+
+/**
+ * 模拟位置的不可变快照
+ * 摇杆、路径和 Binder 每次更新位置时都创建新的快照并整体替换，
+ * 发送线程一次读取就能拿到同一次更新的经纬度、海拔、方向和速度
+ */
+final class GoPosition {
+    final double lng;       /* 经度（度），WGS84 */
+    final double lat;       /* 纬度（度），WGS84 */
+    final double alt;       /* 海拔（米） */
+    final float bea;        /* 方向（度） */
+    final double speed;     /* 速度（米/秒） */
+
+    GoPosition(double lng, double lat, double alt, float bea, double speed) {
+        this.lng = lng;
+        this.lat = lat;
+        this.alt = alt;
+        this.bea = bea;
+        this.speed = speed;
+    }
+
+    GoPosition withLngLatAlt(double lng, double lat, double alt) {
+        return new GoPosition(lng, lat, alt, bea, speed);
+    }
+}
@@ -10,45 +10,60 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.location.Criteria;
 import android.location.Location;
 import android.location.LocationManager;
 import android.location.provider.ProviderProperties;
 import android.os.Binder;
 import android.os.Build;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.NotificationCompat;
+import androidx.preference.PreferenceManager;
 
 import com.elvishew.xlog.XLog;
+import com.zcshou.core.GeoMath;
 import com.zcshou.gogogo.MainActivity;
 import com.zcshou.gogogo.R;
 import com.zcshou.joystick.JoyStick;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 public class ServiceGo extends Service {
     // 定位相关变量
     public static final double DEFAULT_LAT = 36.667662;
     public static final double DEFAULT_LNG = 117.027707;
     public static final double DEFAULT_ALT = 55.0D;
     public static final float DEFAULT_BEA = 0.0F;
-    private double mCurLat = DEFAULT_LAT;
-    private double mCurLng = DEFAULT_LNG;
-    private double mCurAlt = DEFAULT_ALT;
-    private float mCurBea = DEFAULT_BEA;
-    private double mSpeed = 1.2;        /* 默认的速度，单位 m/s */
+    private static final double DEFAULT_SPEED = 1.2;    /* 默认的速度，单位 m/s */
+    // 当前位置，写入方整体替换快照，发送线程只读取，双方互不阻塞
+    private final AtomicReference<GoPosition> mCurPos =
+            new AtomicReference<>(new GoPosition(DEFAULT_LNG, DEFAULT_LAT, DEFAULT_ALT, DEFAULT_BEA, DEFAULT_SPEED));
     private static final int HANDLER_MSG_ID = 0;
+    private static final int HANDLER_MSG_WAKE_ID = 1;
     private static final String SERVICE_GO_HANDLER_NAME = "ServiceGoLocation";
+    private static final int DEFAULT_LOC_RATE = 10;     /* 默认的位置更新频率，单位 Hz */
+    private static final int DEFAULT_LOC_IDLE_RATE = 1; /* 默认的静止时保活频率，单位 Hz */
+    private static final long LOC_IDLE_DELAY = 1000;    /* 位置保持不变超过该时间后降低频率，单位 ms */
     private LocationManager mLocManager;
     private HandlerThread mLocHandlerThread;
     private Handler mLocHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
     private boolean isStop = false;
+    // 发送节拍，位置不变时自动降低发送频率
+    private GoLocationTicker mLocTicker;
+    // 复用的定位对象，只在 ServiceGoLocation 线程中访问，避免每次发送都创建新对象
+    private GoLocationFix mFixGPS;
+    private GoLocationFix mFixNetwork;
     // 通知栏消息
     private static final int SERVICE_GO_NOTE_ID = 1;
     private static final String SERVICE_GO_NOTE_ACTION_JOYSTICK_SHOW = "ShowJoyStick";
@@ -58,6 +73,7 @@ public class ServiceGo extends Service {
     private NoteActionReceiver mActReceiver;
     // 摇杆相关
     private JoyStick mJoyStick;
+    private final double[] mMoveLngLat = new double[2];    /* 摇杆每次移动时复用的计算缓冲区，只在主线程中使用 */
 
     private final ServiceGoBinder mBinder = new ServiceGoBinder();
 
@@ -87,11 +103,12 @@ public class ServiceGo extends Service {
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        mCurLng = intent.getDoubleExtra(MainActivity.LNG_MSG_ID, DEFAULT_LNG);
-        mCurLat = intent.getDoubleExtra(MainActivity.LAT_MSG_ID, DEFAULT_LAT);
-        mCurAlt = intent.getDoubleExtra(MainActivity.ALT_MSG_ID, DEFAULT_ALT);
+        double lng = intent.getDoubleExtra(MainActivity.LNG_MSG_ID, DEFAULT_LNG);
+        double lat = intent.getDoubleExtra(MainActivity.LAT_MSG_ID, DEFAULT_LAT);
+        double alt = intent.getDoubleExtra(MainActivity.ALT_MSG_ID, DEFAULT_ALT);
+        setCurrentPosition(lng, lat, alt);
 
-        mJoyStick.setCurrentPosition(mCurLng, mCurLat, mCurAlt);
+        setJoyStickPosition(lng, lat, alt);
 
         return super.onStartCommand(intent, flags, startId);
     }
@@ -101,8 +118,9 @@ public class ServiceGo extends Service {
         isStop = true;
         mLocHandler.removeMessages(HANDLER_MSG_ID);
         mLocHandlerThread.quit();
+        mMainHandler.removeCallbacksAndMessages(null);
 
-        mJoyStick.destroy();
+        destroyJoyStick();
 
         removeTestProviderNetwork();
         removeTestProviderGPS();
@@ -148,32 +166,56 @@ public class ServiceGo extends Service {
         startForeground(SERVICE_GO_NOTE_ID, notification);
     }
 
-    private void initJoyStick() {
+    // 摇杆相关的三个方法不是 private：摇杆的地图依赖百度地图的 native 库，单元测试的子类跳过摇杆，只运行位置发送
+    void initJoyStick() {
         mJoyStick = new JoyStick(this);
         mJoyStick.setListener(new JoyStick.JoyStickClickListener() {
             @Override
             public void onMoveInfo(double speed, double disLng, double disLat, double angle) {
-                mSpeed = speed;
-                // 根据当前的经纬度和距离，计算下一个经纬度
-                // Latitude: 1 deg = 110.574 km // 纬度的每度的距离大约为 110.574km
-                // Longitude: 1 deg = 111.320*cos(latitude) km  // 经度的每度的距离从0km到111km不等
-                // 具体见：http://wp.mlab.tw/?p=2200
-                mCurLng += disLng / (111.320 * Math.cos(Math.abs(mCurLat) * Math.PI / 180));
-                mCurLat += disLat / 110.574;
-                mCurBea = (float) angle;
+                // disLng、disLat 为向东、向北的位移，单位 km，与 getDistance 使用同一球面模型计算下一个经纬度
+                double distance = Math.hypot(disLng, disLat) * 1000;
+                double bearing = Math.toDegrees(Math.atan2(disLng, disLat));
+                GoPosition cur;
+                GoPosition next;
+                do {
+                    cur = mCurPos.get();
+                    GeoMath.offset(cur.lng, cur.lat, bearing, distance, mMoveLngLat);
+                    next = new GoPosition(mMoveLngLat[0], mMoveLngLat[1], cur.alt, (float) angle, speed);
+                } while (!mCurPos.compareAndSet(cur, next));
+                wakeGoLocation();
             }
 
             @Override
             public void onPositionInfo(double lng, double lat, double alt) {
-                mCurLng = lng;
-                mCurLat = lat;
-                mCurAlt = alt;
+                setCurrentPosition(lng, lat, alt);
             }
         });
         mJoyStick.show();
     }
 
+    // 可在任意线程调用，路径线程中调用时，悬浮窗只能回到主线程更新
+    void setJoyStickPosition(double lng, double lat, double alt) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mJoyStick.setCurrentPosition(lng, lat, alt);
+        } else {
+            mMainHandler.post(() -> mJoyStick.setCurrentPosition(lng, lat, alt));
+        }
+    }
+
+    void destroyJoyStick() {
+        mJoyStick.destroy();
+    }
+
+    @VisibleForTesting
+    Looper getLocationLooper() {
+        return mLocHandlerThread.getLooper();
+    }
+
     private void initGoLocation() {
+        initLocationRate();
+
+        initLocationFix();
+
         // 创建 HandlerThread 实例，第一个参数是线程的名字
         mLocHandlerThread = new HandlerThread(SERVICE_GO_HANDLER_NAME, Process.THREAD_PRIORITY_FOREGROUND);
         // 启动 HandlerThread 线程
@@ -183,23 +225,96 @@ public class ServiceGo extends Service {
             // 这里的Handler对象可以看作是绑定在HandlerThread子线程中，所以handlerMessage里的操作是在子线程中运行的
             @Override
             public void handleMessage(@NonNull Message msg) {
-                try {
-                    Thread.sleep(100);
-
-                    if (!isStop) {
-                        setLocationNetwork();
-                        setLocationGPS();
-
-                        sendEmptyMessage(HANDLER_MSG_ID);
-                    }
-                } catch (InterruptedException e) {
-                    XLog.e("SERVICEGO: ERROR - handleMessage");
-                    Thread.currentThread().interrupt();
+                if (isStop) {
+                    return;
+                }
+
+                if (msg.what == HANDLER_MSG_ID) {
+                    // 两个 provider 使用同一个快照，保证发送的位置一致
+                    GoPosition pos = mCurPos.get();
+                    setLocationNetwork(pos);
+                    setLocationGPS(pos);
+
+                    scheduleNextLocation(pos);
+                } else if (msg.what == HANDLER_MSG_WAKE_ID) {
+                    resumeGoLocation();
                 }
             }
         };
 
-        mLocHandler.sendEmptyMessage(HANDLER_MSG_ID);
+        mLocHandler.sendEmptyMessageAtTime(HANDLER_MSG_ID, mLocTicker.start(SystemClock.uptimeMillis()));
+    }
+
+    private void initLocationRate() {
+        SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
+        int rate = getLocationRate(sharedPreferences, "setting_location_rate",
+                R.string.setting_location_rate_default, DEFAULT_LOC_RATE);
+        int idleRate = getLocationRate(sharedPreferences, "setting_location_idle_rate",
+                R.string.setting_location_idle_rate_default, DEFAULT_LOC_IDLE_RATE);
+        boolean adaptive = sharedPreferences.getBoolean("setting_location_adaptive", true);
+        mLocTicker = new GoLocationTicker(1000 / rate, 1000 / idleRate, LOC_IDLE_DELAY, adaptive);
+    }
+
+    private int getLocationRate(SharedPreferences sharedPreferences, String key, int defaultResId, int defaultRate) {
+        int rate;
+        try {
+            rate = Integer.parseInt(sharedPreferences.getString(key, getResources().getString(defaultResId)));
+        } catch (NumberFormatException e) {  // GOOD: The exception is caught.
+            rate = defaultRate;
+        }
+        return rate > 0 ? rate : defaultRate;
+    }
+
+    // 可在任意线程调用，保留方向和速度，只替换经纬度和海拔
+    private void setCurrentPosition(double lng, double lat, double alt) {
+        GoPosition cur;
+        do {
+            cur = mCurPos.get();
+        } while (!mCurPos.compareAndSet(cur, cur.withLngLatAlt(lng, lat, alt)));
+        wakeGoLocation();
+    }
+
+    // 路径播放时同时更新方向和速度，保证上报的速度与每次的实际位移一致
+    private void setCurrentPosition(double lng, double lat, double alt, float bea, double speed) {
+        mCurPos.set(new GoPosition(lng, lat, alt, bea, speed));
+        wakeGoLocation();
+    }
+
+    // 位置变化时调用，只有处于静止状态时才需要唤醒发送线程，其余情况不影响发送节拍
+    private void wakeGoLocation() {
+        if (mLocTicker != null && mLocTicker.isIdle()) {
+            mLocHandler.sendEmptyMessage(HANDLER_MSG_WAKE_ID);
+        }
+    }
+
+    // 在 ServiceGoLocation 线程中执行：退出静止状态，立即发送一次并恢复正常频率
+    private void resumeGoLocation() {
+        long nextTime = mLocTicker.resume(SystemClock.uptimeMillis());
+        if (nextTime >= 0) {
+            mLocHandler.removeMessages(HANDLER_MSG_ID);
+            mLocHandler.sendEmptyMessageAtTime(HANDLER_MSG_ID, nextTime);
+        }
+    }
+
+    private void scheduleNextLocation(GoPosition pos) {
+        long now = SystemClock.uptimeMillis();
+        long missed = mLocTicker.getMissedCount();
+        long nextTime = mLocTicker.next(pos, now);
+        if (mLocTicker.getMissedCount() != missed) {
+            XLog.d("SERVICEGO: missed location tick(s), total " + mLocTicker.getMissedCount());
+        }
+        // 刚进入静止状态时再读一次位置：写入方可能在 next 读取快照之后、设置静止状态之前发布了新位置，
+        // 它读到的还是非静止状态，不会发出唤醒消息。isIdle 和 mCurPos 都是 volatile，先写后读，两边至少有一边能看到对方
+        if (mLocTicker.isIdle() && mCurPos.get() != pos) {
+            nextTime = mLocTicker.resume(now);
+        }
+
+        mLocHandler.sendEmptyMessageAtTime(HANDLER_MSG_ID, nextTime);
+    }
+
+    private void initLocationFix() {
+        mFixGPS = GoLocationFix.gps();
+        mFixNetwork = GoLocationFix.network();
     }
 
     private void removeTestProviderGPS() {
@@ -233,21 +348,10 @@ public class ServiceGo extends Service {
         }
     }
 
-    private void setLocationGPS() {
+    private void setLocationGPS(GoPosition pos) {
         try {
             // 尽可能模拟真实的 GPS 数据
-            Location loc = new Location(LocationManager.GPS_PROVIDER);
-            loc.setAccuracy(Criteria.ACCURACY_FINE);    // 设定此位置的估计水平精度，以米为单位。
-            loc.setAltitude(mCurAlt);                     // 设置高度，在 WGS 84 参考坐标系中的米
-            loc.setBearing(mCurBea);                       // 方向（度）
-            loc.setLatitude(mCurLat);                   // 纬度（度）
-            loc.setLongitude(mCurLng);                  // 经度（度）
-            loc.setTime(System.currentTimeMillis());    // 本地时间
-            loc.setSpeed((float) mSpeed);
-            loc.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
-            Bundle bundle = new Bundle();
-            bundle.putInt("satellites", 7);
-            loc.setExtras(bundle);
+            Location loc = mFixGPS.update(pos, System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
 
             mLocManager.setTestProviderLocation(LocationManager.GPS_PROVIDER, loc);
         } catch (Exception e) {
@@ -288,18 +392,10 @@ public class ServiceGo extends Service {
         }
     }
 
-    private void setLocationNetwork() {
+    private void setLocationNetwork(GoPosition pos) {
         try {
             // 尽可能模拟真实的 NETWORK 数据
-            Location loc = new Location(LocationManager.NETWORK_PROVIDER);
-            loc.setAccuracy(Criteria.ACCURACY_COARSE);  // 设定此位置的估计水平精度，以米为单位。
-            loc.setAltitude(mCurAlt);                     // 设置高度，在 WGS 84 参考坐标系中的米
-            loc.setBearing(mCurBea);                       // 方向（度）
-            loc.setLatitude(mCurLat);                   // 纬度（度）
-            loc.setLongitude(mCurLng);                  // 经度（度）
-            loc.setTime(System.currentTimeMillis());    // 本地时间
-            loc.setSpeed((float) mSpeed);
-            loc.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+            Location loc = mFixNetwork.update(pos, System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos());
 
             mLocManager.setTestProviderLocation(LocationManager.NETWORK_PROVIDER, loc);
         } catch (Exception e) {
@@ -324,13 +420,20 @@ public class ServiceGo extends Service {
     }
 
     public class ServiceGoBinder extends Binder {
+        public long getMissedLocationCount() {
+            return mLocTicker.getMissedCount();
+        }
+
+        // 保留当前的方向和速度，只替换经纬度和海拔
         public void setPosition(double lng, double lat, double alt) {
-            mLocHandler.removeMessages(HANDLER_MSG_ID);
-            mCurLng = lng;
-            mCurLat = lat;
-            mCurAlt = alt;
-            mLocHandler.sendEmptyMessage(HANDLER_MSG_ID);
-            mJoyStick.setCurrentPosition(mCurLng, mCurLat, mCurAlt);
+            GoPosition cur = mCurPos.get();
+            setPosition(lng, lat, alt, cur.bea, cur.speed);
+        }
+
+        // 只发布新的位置，由发送线程按原有节拍发出，不打断发送节拍
+        public void setPosition(double lng, double lat, double alt, float bea, double speed) {
+            setCurrentPosition(lng, lat, alt, bea, speed);
+            setJoyStickPosition(lng, lat, alt);
         }
     }
 }
@@ -51,6 +51,13 @@ public class CoordinateValidator {
         Log.i(TAG,"坐标转换圆环偏差: " + distance + "米");
         Log.i(TAG,"转换质量: " + (distance < 10 ? "优秀" : distance < 50 ? "良好" : "需要改进"));
 
+        // 迭代精确反算的圆环偏差，与上面的一次近似对比
+        double[] wgs84Exact = MapUtils.bd2wgsExact(bdLng, bdLat);
+        double[] bdExactReverse = MapUtils.wgs2bd09(wgs84Exact[0], wgs84Exact[1]);
+        double exactDistance = MapUtils.getDistance(bdLng, bdLat, bdExactReverse[0], bdExactReverse[1]);
+        Log.i(TAG,"精确反算WGS84: 经度=" + wgs84Exact[0] + ", 纬度=" + wgs84Exact[1]);
+        Log.i(TAG,"精确反算圆环偏差: " + exactDistance + "米");
+
         // 验证MapUtils.wgs2bd09的参数顺序
         Log.i(TAG,"=== 参数顺序验证 ===");
         double[] test1 = MapUtils.wgs2bd09(39.907, 116.391); // 纬度,经度
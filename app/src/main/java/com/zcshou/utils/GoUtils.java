@@ -168,14 +168,20 @@ public class GoUtils {
         return null;
     }
 
+    // SimpleDateFormat 创建开销较大且不是线程安全的，每个线程缓存一个
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()));
+
     public static  String timeStamp2Date(String seconds) {
         if (seconds == null || seconds.isEmpty() || seconds.equals("null")) {
             return "";
         }
 
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
+        return timeStamp2Date(Long.parseLong(seconds));
+    }
 
-        return sdf.format(new Date(Long.parseLong(seconds + "000")));
+    public static String timeStamp2Date(long seconds) {
+        return DATE_FORMAT.get().format(new Date(seconds * 1000));
     }
 
     //提醒开启位置模拟的弹框
@@ -1,7 +1,12 @@
 package com.zcshou.utils;
 
 import com.baidu.mapapi.model.LatLng;
+import com.zcshou.core.GcjOffsetGrid;
+import com.zcshou.core.GeoMath;
 
+/**
+ * 坐标转换的实现位于 core 模块的 GeoMath，这里保留原有接口并提供 LatLng 重载
+ */
 public class MapUtils {
 //    public final static String COORDINATE_TYPE_GCJ02 = "gcj02";
 //    public final static String COORDINATE_TYPE_BD09LL = "bd09ll";
@@ -11,14 +16,13 @@ public class MapUtils {
 //    public static float[] MARS_WEIGHT = {0.034f,0.068f,0.152f,0.228f,0.304f};
     
     //坐标转换相关
-    public final static double pi = 3.14159265358979324;
-    public final static double a = 6378245.0;
-    public final static double ee = 0.00669342162296594323;
-    public final static double x_pi = 3.14159265358979324 * 3000.0 / 180.0;
+    public final static double pi = GeoMath.pi;
+    public final static double a = GeoMath.a;
+    public final static double ee = GeoMath.ee;
+    public final static double x_pi = GeoMath.x_pi;
     
     public static double[] bd2wgs(double lon, double lat) {
-        double[] bd2Gcj = bd09togcj02(lon, lat);
-        return gcj02towgs84(bd2Gcj[0], bd2Gcj[1]);
+        return GeoMath.bd2wgs(lon, lat);
     }
 
     /**
@@ -29,85 +33,88 @@ public class MapUtils {
      *
      */
     public static double[] wgs2bd09(double lng, double lat){
-        //第一次转换
-        double dlat = transformLat(lng - 105.0, lat - 35.0);
-        double dlng = transformLon(lng - 105.0, lat - 35.0);
-        double radlat = lat / 180.0 * pi;
-        double magic = Math.sin(radlat);
-        magic = 1 - ee * magic * magic;
-        double sqrtmagic = Math.sqrt(magic);
-        dlat = (dlat * 180.0) / ((a * (1 - ee)) / (magic * sqrtmagic) * pi);
-        dlng = (dlng * 180.0) / (a / sqrtmagic * Math.cos(radlat) * pi);
-        double mglat = lat + dlat;
-        double mglng = lng + dlng;
-
-        //第二次转换
-        double z = Math.sqrt(mglng * mglng + mglat * mglat) + 0.00002 * Math.sin(mglat * x_pi);
-        double theta = Math.atan2(mglat, mglng) + 0.000003 * Math.cos(mglng * x_pi);
-        double bd_lng = z * Math.cos(theta) + 0.0065;
-        double bd_lat = z * Math.sin(theta) + 0.006;
-        return new double[] { bd_lng, bd_lat };
+        return GeoMath.wgs2bd09(lng, lat);
     }
     
     public static double[] bd09togcj02(double bd_lon, double bd_lat) {
-        double x = bd_lon - 0.0065;
-        double y = bd_lat - 0.006;
-        double z = Math.sqrt(x * x + y * y) - 0.00002 * Math.sin(y * x_pi);
-        double theta = Math.atan2(y, x) - 0.000003 * Math.cos(x * x_pi);
-        double gg_lng = z * Math.cos(theta);
-        double gg_lat = z * Math.sin(theta);
-        return new double[] { gg_lng, gg_lat };
+        return GeoMath.bd09togcj02(bd_lon, bd_lat);
     }
 
     public static double[] gcj02towgs84(double lng, double lat) {
-        double dlat = transformLat(lng - 105.0, lat - 35.0);
-        double dlng = transformLon(lng - 105.0, lat - 35.0);
-        double radlat = lat / 180.0 * pi;
-        double magic = Math.sin(radlat);
-        magic = 1 - ee * magic * magic;
-        double sqrtmagic = Math.sqrt(magic);
-        dlat = (dlat * 180.0) / ((a * (1 - ee)) / (magic * sqrtmagic) * pi);
-        dlng = (dlng * 180.0) / (a / sqrtmagic * Math.cos(radlat) * pi);
-        double mglat = lat + dlat;
-        double mglng = lng + dlng;
-        return new double[] { lng * 2 - mglng, lat * 2 - mglat };
-    }
-
-    private static double transformLat(double lat, double lon) {
-        double ret = -100.0 + 2.0 * lat + 3.0 * lon + 0.2 * lon * lon + 0.1 * lat * lon + 0.2 * Math.sqrt(Math.abs(lat));
-        ret += (20.0 * Math.sin(6.0 * lat * pi) + 20.0 * Math.sin(2.0 * lat * pi)) * 2.0 / 3.0;
-        ret += (20.0 * Math.sin(lon * pi) + 40.0 * Math.sin(lon / 3.0 * pi)) * 2.0 / 3.0;
-        ret += (160.0 * Math.sin(lon / 12.0 * pi) + 320 * Math.sin(lon * pi  / 30.0)) * 2.0 / 3.0;
-        return ret;
-    }
-
-    private static double transformLon(double lat, double lon) {
-        double ret = 300.0 + lat + 2.0 * lon + 0.1 * lat * lat + 0.1 * lat * lon + 0.1 * Math.sqrt(Math.abs(lat));
-        ret += (20.0 * Math.sin(6.0 * lat * pi) + 20.0 * Math.sin(2.0 * lat * pi)) * 2.0 / 3.0;
-        ret += (20.0 * Math.sin(lat * pi) + 40.0 * Math.sin(lat / 3.0 * pi)) * 2.0 / 3.0;
-        ret += (150.0 * Math.sin(lat / 12.0 * pi) + 300.0 * Math.sin(lat / 30.0 * pi)) * 2.0 / 3.0;
-        return ret;
+        return GeoMath.gcj02towgs84(lng, lat);
+    }
+
+    /*
+     * 不分配内存的版本：结果写入 out，out[0] 为经度，out[1] 为纬度
+     */
+    public static void bd2wgs(double lon, double lat, double[] out) {
+        GeoMath.bd2wgs(lon, lat, out);
+    }
+
+    public static void wgs2bd09(double lng, double lat, double[] out) {
+        GeoMath.wgs2bd09(lng, lat, out);
+    }
+
+    /*
+     * 批量转换：输出可以就是输入数组，结果与逐点调用逐位一致
+     */
+    public static void bd2wgs(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GeoMath.bd2wgs(lng, lat, outLng, outLat, count);
+    }
+
+    public static void wgs2bd09(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GeoMath.wgs2bd09(lng, lat, outLng, outLat, count);
+    }
+
+    public static void bd09togcj02(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GeoMath.bd09togcj02(lng, lat, outLng, outLat, count);
+    }
+
+    public static void gcj02towgs84(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GeoMath.gcj02towgs84(lng, lat, outLng, outLat, count);
+    }
+
+    /*
+     * 迭代精确反算：上面的版本是一次近似，误差在分米到米级；
+     * 下面的版本迭代到 GeoMath.INVERSE_TOLERANCE（1e-7°，约 1 cm）以内，用于单点定位等对精度敏感的地方；
+     * 开销见 core/src/jmh/baseline.txt：gcj02towgs84Exact 和 bd2wgsExact 都约为一次近似的 3 倍
+     */
+    public static double[] bd2wgsExact(double lon, double lat) {
+        return GeoMath.bd2wgsExact(lon, lat);
+    }
+
+    public static double[] gcj02towgs84Exact(double lng, double lat) {
+        return GeoMath.gcj02towgs84Exact(lng, lat);
+    }
+
+    public static void bd2wgsExact(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GeoMath.bd2wgsExact(lng, lat, outLng, outLat, count);
+    }
+
+    /*
+     * 偏移量网格版本：GCJ-02 一步查表插值，误差不超过 GcjOffsetGrid.MAX_ERROR（约 0.1 m），
+     * 用于路线、导入和摇杆位置更新等大量重复转换同一区域的地方；中国范围外自动使用解析公式
+     */
+    public static void bd2wgsGrid(double lon, double lat, double[] out) {
+        GcjOffsetGrid.bd2wgs(lon, lat, out);
+    }
+
+    public static void wgs2bd09Grid(double lng, double lat, double[] out) {
+        GcjOffsetGrid.wgs2bd09(lng, lat, out);
+    }
+
+    public static void bd2wgsGrid(double[] lng, double[] lat, double[] outLng, double[] outLat, int count) {
+        GcjOffsetGrid.bd2wgs(lng, lat, outLng, outLat, count);
     }
 
 //    private static boolean out_of_china(double lng, double lat) {
 //        return (lng < 72.004 || lng > 137.8347) || ((lat < 0.8293 || lat > 55.8271));
 //    }
     public static double getDistance(LatLng point1, LatLng point2) {
-        double lat1 = point1.latitude;
-        double lon1 = point1.longitude;
-        double lat2 = point2.latitude;
-        double lon2 = point2.longitude;
-
-        double radLat1 = Math.toRadians(lat1);
-        double radLat2 = Math.toRadians(lat2);
-        double a = radLat1 - radLat2;
-        double b = Math.toRadians(lon1) - Math.toRadians(lon2);
-
-        double s = 2 * Math.asin(Math.sqrt(Math.pow(Math.sin(a / 2), 2) +
-                Math.cos(radLat1) * Math.cos(radLat2) * Math.pow(Math.sin(b / 2), 2)));
-        s = s * 6378137.0; // 地球半径(米)
-        s = Math.round(s * 10000) / 10000.0;
-
-        return s;
+        return GeoMath.getDistance(point1.longitude, point1.latitude, point2.longitude, point2.latitude);
+    }
+
+    public static double getDistance(double lon1, double lat1, double lon2, double lat2) {
+        return GeoMath.getDistance(lon1, lat1, lon2, lat2);
     }
 }
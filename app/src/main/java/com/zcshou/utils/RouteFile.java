@@ -0,0 +1,213 @@
+package com.zcshou.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 二进制路径文件
+ * <p>
+ * 格式（大端）：
+ * 文件头 magic(int) version(short) flags(short) speed(double) timestamp(long) count(int)；
+ * 坐标为 1e-7 度定点数，第一个点存绝对值，之后存与前一点的差值（zigzag 变长整数）；
+ * 按 flags 可选地存每个点的速度(float, m/s)和停留时间(int, ms)；
+ * 文件末尾是之前所有字节的 CRC32
+ */
+public final class RouteFile {
+    public static final String EXT_BINARY = ".gogo";
+    public static final String EXT_JSON = ".json";
+
+    private static final int MAGIC = 0x47475254;    /* "GGRT" */
+    private static final short VERSION = 1;
+    private static final int FLAG_LOOP = 1;
+    private static final int FLAG_SPEED = 1 << 1;
+    private static final int FLAG_DWELL = 1 << 2;
+    private static final int HEADER_SIZE = 28;
+    private static final int CRC_SIZE = 4;
+    private static final double FIXED_SCALE = 1e7;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public double[] lng;        /* BD-09 经度 */
+    public double[] lat;        /* BD-09 纬度 */
+    public float[] speed;       /* 每个点的速度，可为 null */
+    public int[] dwell;         /* 每个点的停留时间，可为 null */
+    public boolean isLoop;
+    public double moveSpeed;
+    public long timestamp;
+
+    public RouteFile(double[] lng, double[] lat) {
+        if (lng.length != lat.length) {
+            throw new IllegalArgumentException("Longitude and latitude counts differ");
+        }
+        this.lng = lng;
+        this.lat = lat;
+    }
+
+    public int size() {
+        return lng.length;
+    }
+
+    /**
+     * 根据文件头判断是否为二进制路径文件
+     */
+    public static boolean isBinary(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE), new CRC32());
+
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            int count = size();
+            int flags = (isLoop ? FLAG_LOOP : 0)
+                    | (speed != null ? FLAG_SPEED : 0)
+                    | (dwell != null ? FLAG_DWELL : 0);
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(flags);
+            out.writeDouble(moveSpeed);
+            out.writeLong(timestamp);
+            out.writeInt(count);
+
+            int prevLng = 0;
+            int prevLat = 0;
+            for (int i = 0; i < count; i++) {
+                int fixedLng = toFixed(lng[i]);
+                int fixedLat = toFixed(lat[i]);
+                writeVarInt(out, zigzag(fixedLng - prevLng));
+                writeVarInt(out, zigzag(fixedLat - prevLat));
+                prevLng = fixedLng;
+                prevLat = fixedLat;
+            }
+
+            if (speed != null) {
+                for (int i = 0; i < count; i++) {
+                    out.writeFloat(speed[i]);
+                }
+            }
+            if (dwell != null) {
+                for (int i = 0; i < count; i++) {
+                    out.writeInt(dwell[i]);
+                }
+            }
+
+            // 校验值本身不参与计算
+            out.flush();
+            int crc = (int) checked.getChecksum().getValue();
+            out.writeInt(crc);
+        }
+    }
+
+    public static RouteFile read(File file) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), new CRC32());
+
+        try (DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a route file");
+            }
+            short version = in.readShort();
+            if (version > VERSION) {
+                throw new IOException("Unsupported route file version " + version);
+            }
+            int flags = in.readShort();
+            double moveSpeed = in.readDouble();
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            // 每个点至少占两个变长整数字节，再加上可选的速度和停留时间，文件损坏时不按 count 分配过大的数组
+            int pointSize = 2 + ((flags & FLAG_SPEED) != 0 ? 4 : 0) + ((flags & FLAG_DWELL) != 0 ? 4 : 0);
+            long maxCount = (file.length() - HEADER_SIZE - CRC_SIZE) / pointSize;
+            if (count < 0 || count > maxCount) {
+                throw new IOException("Invalid point count " + count);
+            }
+
+            double[] lng = new double[count];
+            double[] lat = new double[count];
+            int fixedLng = 0;
+            int fixedLat = 0;
+            for (int i = 0; i < count; i++) {
+                fixedLng += unzigzag(readVarInt(in));
+                fixedLat += unzigzag(readVarInt(in));
+                lng[i] = fixedLng / FIXED_SCALE;
+                lat[i] = fixedLat / FIXED_SCALE;
+            }
+
+            RouteFile route = new RouteFile(lng, lat);
+            route.isLoop = (flags & FLAG_LOOP) != 0;
+            route.moveSpeed = moveSpeed;
+            route.timestamp = timestamp;
+
+            if ((flags & FLAG_SPEED) != 0) {
+                route.speed = new float[count];
+                for (int i = 0; i < count; i++) {
+                    route.speed[i] = in.readFloat();
+                }
+            }
+            if ((flags & FLAG_DWELL) != 0) {
+                route.dwell = new int[count];
+                for (int i = 0; i < count; i++) {
+                    route.dwell[i] = in.readInt();
+                }
+            }
+
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("Route file checksum mismatch");
+            }
+
+            return route;
+        }
+    }
+
+    private static int toFixed(double value) {
+        return (int) Math.round(value * FIXED_SCALE);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
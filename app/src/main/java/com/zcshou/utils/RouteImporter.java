@@ -0,0 +1,402 @@
+package com.zcshou.utils;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * 流式导入 GPX/KML/GeoJSON 轨迹，边解析边抽稀，不在内存中保留整个文档
+ * 外部轨迹为 WGS-84 坐标，导入结果转换为与地图选点一致的 BD-09 坐标
+ * <p>
+ * XML 使用 SAX 解析：XmlPullParser 会把一个文本节点完整读入内存，而 KML 的一条 LineString
+ * 就是一个可达数 MB 的 &lt;coordinates&gt; 文本节点；SAX 按缓冲区分段回调 characters，
+ * 坐标在 {@link TupleScanner} 中逐字符解析，跨段的半个坐标保留在扫描状态中。
+ */
+public final class RouteImporter {
+    public static final double DEFAULT_SPACING = 5.0;   /* 默认的最小点间距，单位 m */
+
+    private RouteImporter() {
+    }
+
+    /**
+     * 根据文件名判断是否为支持导入的格式
+     */
+    public static boolean isSupported(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".gpx") || lower.endsWith(".kml")
+                || lower.endsWith(".geojson") || lower.endsWith(".json");
+    }
+
+    /**
+     * @param in      轨迹文件输入流，由调用方关闭
+     * @param name    文件名，用于识别格式
+     * @param spacing 相邻两点的最小间距，单位 m，小于该距离的点被丢弃
+     */
+    public static RouteFile importRoute(InputStream in, String name, double spacing) throws IOException {
+        String lower = name.toLowerCase(Locale.ROOT);
+        PointSink sink = new PointSink(spacing);
+
+        try {
+            if (lower.endsWith(".gpx")) {
+                parseXml(in, new GpxHandler(sink));
+            } else if (lower.endsWith(".kml")) {
+                parseXml(in, new KmlHandler(sink));
+            } else if (lower.endsWith(".geojson") || lower.endsWith(".json")) {
+                JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                readGeoJson(reader, sink);
+            } else {
+                throw new IOException("Unsupported track format: " + name);
+            }
+        } catch (SAXException | ParserConfigurationException | IllegalStateException | NumberFormatException e) {
+            throw new IOException("Malformed track file: " + e.getMessage(), e);
+        }
+
+        return sink.finish();
+    }
+
+    private static void parseXml(InputStream in, DefaultHandler handler)
+            throws SAXException, ParserConfigurationException, IOException {
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.newSAXParser().parse(in, handler);
+    }
+
+    // GPX：只取航迹点和路线点，忽略独立的航点
+    private static final class GpxHandler extends DefaultHandler {
+        private final PointSink mSink;
+
+        GpxHandler(PointSink sink) {
+            mSink = sink;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("trkpt".equals(localName) || "rtept".equals(localName)) {
+                String lat = attributes.getValue("", "lat");
+                String lon = attributes.getValue("", "lon");
+                if (lat != null && lon != null) {
+                    mSink.add(Double.parseDouble(lon), Double.parseDouble(lat));
+                }
+            }
+        }
+    }
+
+    // KML：<coordinates> 为 "经度,纬度[,高度]" 以空白分隔，<gx:coord> 为 "经度 纬度 高度"
+    private static final class KmlHandler extends DefaultHandler {
+        private final TupleScanner mScanner;
+        private String mTag;        /* 正在读取坐标的元素，不在坐标元素中时为 null */
+
+        KmlHandler(PointSink sink) {
+            mScanner = new TupleScanner(sink);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("coordinates".equals(localName)) {
+                mTag = localName;
+                mScanner.begin(',');
+            } else if ("coord".equals(localName)) {
+                mTag = localName;
+                mScanner.begin(' ');
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (mTag != null) {
+                mScanner.feed(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (mTag != null && mTag.equals(localName)) {
+                mScanner.end();
+                mTag = null;
+            }
+        }
+    }
+
+    /**
+     * 逐字符解析 KML 坐标，不为每个数字创建子串
+     * <p>
+     * separator 为 ',' 时各分量以逗号分隔、各组坐标以空白分隔；为 ' ' 时分量以空白分隔，整个元素只有一组坐标。
+     * 数字的解析状态保存在字段中，文本被分成任意多段送入时结果不变。
+     * 超过 15 位有效数字的数字很少见，交给 Double.parseDouble 解析，保证结果与它一致。
+     */
+    private static final class TupleScanner {
+        private static final double[] POW10 = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+        private static final int MAX_DIGITS = 18;      /* long 能精确保存的有效数字位数 */
+        private static final int MAX_EXACT_DIGITS = 15; /* double 能精确表示的十进制有效数字位数 */
+
+        private final PointSink mSink;
+        private char mSeparator;
+        private int mField;             /* 当前坐标中已读取的分量数 */
+        private double mLng;
+        private double mLat;
+        // 正在读取的数字
+        private boolean isInNumber;
+        private boolean isNegative;
+        private boolean isInFraction;
+        private boolean isInExponent;
+        private boolean isExponentNegative;
+        private boolean hasDigits;
+        private boolean hasExponentDigits;
+        private long mMantissa;
+        private int mDigits;            /* 已计入 mMantissa 的有效数字位数 */
+        private int mScale;             /* 十进制指数的修正：小数位为负，超出精度的整数位为正 */
+        private int mExponent;
+        private final StringBuilder mText = new StringBuilder();   /* 数字的原文，复用，只在有效数字过多时使用 */
+
+        TupleScanner(PointSink sink) {
+            mSink = sink;
+        }
+
+        void begin(char separator) {
+            mSeparator = separator;
+            mField = 0;
+            resetNumber();
+        }
+
+        void feed(char[] ch, int start, int length) {
+            for (int i = start, end = start + length; i < end; i++) {
+                char c = ch[i];
+                if (c == ',' && mSeparator == ',') {
+                    endField();
+                } else if (Character.isWhitespace(c)) {
+                    endField();
+                    // 逗号后的空白不结束一组坐标，经纬度都已读取后的空白才是坐标之间的分隔
+                    if (mSeparator == ',' && mField >= 2) {
+                        endTuple();
+                    }
+                } else {
+                    appendNumber(c);
+                }
+            }
+        }
+
+        void end() {
+            endField();
+            endTuple();
+        }
+
+        private void appendNumber(char c) {
+            if (c >= '0' && c <= '9') {
+                if (isInExponent) {
+                    hasExponentDigits = true;
+                    if (mExponent < 10000) {
+                        mExponent = mExponent * 10 + (c - '0');
+                    }
+                } else {
+                    hasDigits = true;
+                    if (mDigits < MAX_DIGITS) {
+                        if (mMantissa != 0 || c != '0') {
+                            mDigits++;
+                        }
+                        mMantissa = mMantissa * 10 + (c - '0');
+                        if (isInFraction) {
+                            mScale--;
+                        }
+                    } else if (!isInFraction) {
+                        mScale++;
+                    }
+                }
+            } else if (c == '-' || c == '+') {
+                if (isInExponent && !hasExponentDigits) {
+                    isExponentNegative = c == '-';
+                } else if (!isInNumber) {
+                    isNegative = c == '-';
+                } else {
+                    throw new NumberFormatException("Invalid coordinate near '" + c + "'");
+                }
+            } else if (c == '.' && !isInFraction && !isInExponent) {
+                isInFraction = true;
+            } else if ((c == 'e' || c == 'E') && hasDigits && !isInExponent) {
+                isInExponent = true;
+            } else {
+                throw new NumberFormatException("Invalid coordinate near '" + c + "'");
+            }
+            isInNumber = true;
+            mText.append(c);
+        }
+
+        private void endField() {
+            if (!isInNumber) {
+                return;
+            }
+            if (!hasDigits || (isInExponent && !hasExponentDigits)) {
+                throw new NumberFormatException("Invalid coordinate number");
+            }
+
+            int exponent = mScale + (isExponentNegative ? -mExponent : mExponent);
+            double value;
+            // 有效数字不超过 15 位、指数不超过 22 时两个操作数都是精确值，结果只有一次舍入
+            if (mDigits <= MAX_EXACT_DIGITS && exponent >= 0 && exponent < POW10.length) {
+                value = mMantissa * POW10[exponent];
+            } else if (mDigits <= MAX_EXACT_DIGITS && exponent < 0 && -exponent < POW10.length) {
+                value = mMantissa / POW10[-exponent];
+            } else {
+                // 原文带有符号，这里只取绝对值，符号统一在下面处理
+                value = Math.abs(Double.parseDouble(mText.toString()));
+            }
+            if (isNegative) {
+                value = -value;
+            }
+
+            if (mField == 0) {
+                mLng = value;
+            } else if (mField == 1) {
+                mLat = value;
+            }
+            mField++;
+            resetNumber();
+        }
+
+        private void endTuple() {
+            if (mField == 1) {
+                throw new NumberFormatException("Coordinate without latitude");
+            }
+            if (mField >= 2) {
+                mSink.add(mLng, mLat);
+            }
+            mField = 0;
+        }
+
+        private void resetNumber() {
+            isInNumber = false;
+            isNegative = false;
+            isInFraction = false;
+            isInExponent = false;
+            isExponentNegative = false;
+            hasDigits = false;
+            hasExponentDigits = false;
+            mMantissa = 0;
+            mDigits = 0;
+            mScale = 0;
+            mExponent = 0;
+            mText.setLength(0);
+        }
+    }
+
+    // GeoJSON：遍历所有对象，遇到 coordinates 时按任意嵌套层级读取 [经度, 纬度, ...]
+    private static void readGeoJson(JsonReader reader, PointSink sink) throws IOException {
+        JsonToken token = reader.peek();
+
+        if (token == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("coordinates".equals(name)) {
+                    readGeoJsonCoordinates(reader, sink);
+                } else if ("properties".equals(name)) {
+                    reader.skipValue();
+                } else {
+                    readGeoJson(reader, sink);
+                }
+            }
+            reader.endObject();
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readGeoJson(reader, sink);
+            }
+            reader.endArray();
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    private static void readGeoJsonCoordinates(JsonReader reader, PointSink sink) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+
+        reader.beginArray();
+        if (reader.hasNext() && reader.peek() == JsonToken.NUMBER) {
+            double lng = reader.nextDouble();
+            double lat = reader.nextDouble();
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            sink.add(lng, lat);
+        } else {
+            while (reader.hasNext()) {
+                readGeoJsonCoordinates(reader, sink);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * 接收解析出的点，按最小间距抽稀并转换为 BD-09 坐标
+     */
+    private static final class PointSink {
+        private final double mSpacing;
+        private double[] mLng = new double[1024];
+        private double[] mLat = new double[1024];
+        private int mCount = 0;
+        private double mLastLng;        /* 上一个保留点的 WGS-84 坐标 */
+        private double mLastLat;
+        private boolean hasPending = false;     /* 最后一个被丢弃的点，结束时补上以保留终点 */
+        private double mPendingLng;
+        private double mPendingLat;
+        private final double[] mBd = new double[2];
+
+        PointSink(double spacing) {
+            mSpacing = spacing;
+        }
+
+        void add(double wgsLng, double wgsLat) {
+            if (mCount > 0 && MapUtils.getDistance(mLastLng, mLastLat, wgsLng, wgsLat) < mSpacing) {
+                hasPending = true;
+                mPendingLng = wgsLng;
+                mPendingLat = wgsLat;
+                return;
+            }
+            keep(wgsLng, wgsLat);
+        }
+
+        private void keep(double wgsLng, double wgsLat) {
+            if (mCount == mLng.length) {
+                mLng = Arrays.copyOf(mLng, mCount * 2);
+                mLat = Arrays.copyOf(mLat, mCount * 2);
+            }
+
+            MapUtils.wgs2bd09Grid(wgsLng, wgsLat, mBd);
+            mLng[mCount] = mBd[0];
+            mLat[mCount] = mBd[1];
+            mCount++;
+
+            mLastLng = wgsLng;
+            mLastLat = wgsLat;
+            hasPending = false;
+        }
+
+        RouteFile finish() {
+            if (hasPending) {
+                keep(mPendingLng, mPendingLat);
+            }
+
+            RouteFile route = new RouteFile(Arrays.copyOf(mLng, mCount), Arrays.copyOf(mLat, mCount));
+            route.timestamp = System.currentTimeMillis();
+            return route;
+        }
+    }
+}
@@ -2,16 +2,24 @@ package com.zcshou.utils;
 
 import android.graphics.Color;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.baidu.mapapi.map.BaiduMap;
 import com.baidu.mapapi.map.BitmapDescriptor;
 import com.baidu.mapapi.map.BitmapDescriptorFactory;
+import com.baidu.mapapi.map.MapStatus;
 import com.baidu.mapapi.map.MarkerOptions;
+import com.baidu.mapapi.map.Overlay;
 import com.baidu.mapapi.map.Polyline;
 import com.baidu.mapapi.map.PolylineOptions;
 import com.baidu.mapapi.model.LatLng;
+import com.zcshou.core.CompiledRoute;
+import com.zcshou.core.RouteSimplifier;
 import com.zcshou.gogogo.R;
 
 import org.greenrobot.eventbus.EventBus;
@@ -25,20 +33,46 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RouteManager {
     // 单例实例
     private static volatile RouteManager sInstance;
     private List<LatLng> mPoints = new ArrayList<>();
-    private Polyline mPolyline;
+    private static final int ROUTE_CHUNK_SIZE = 64;   /* 每条折线覆盖物包含的最多路段数 */
+    // 路线按固定大小分段绘制，增删点时只需更新最后一段
+    private final List<Polyline> mPolylines = new ArrayList<>();
+    private final List<Overlay> mMarkers = new ArrayList<>();   /* 与 mPoints 一一对应，没有标记的点为 null */
+    private static final int SIMPLIFY_MIN_POINTS = 500;   /* 超过该点数的导入路线按缩放级别抽稀显示 */
+    private static final int BASE_CHUNK_SIZE = 1024;      /* 抽稀折线每个覆盖物的最多点数 */
+    // 导入的长路线只画抽稀后的折线，之后手动添加的点仍按分段完整绘制
+    private final List<Polyline> mBasePolylines = new ArrayList<>();
+    private int mBaseCount = 0;         /* 抽稀显示的导入点数 */
+    private double[] mBaseLng;
+    private double[] mBaseLat;
+    private final int[][] mBaseBands = new int[RouteSimplifier.MAX_ZOOM + 1][];    /* 各缩放档位的抽稀结果 */
+    private int mBaseBand = -1;
     private BaiduMap mBaiduMap;
-    private Handler mRouteHandler = new Handler(Looper.getMainLooper());
-    private int mRouteIndex = 0;
-    private RouteListener mRouteListener;
+    private static final String ROUTE_ENGINE_NAME = "RouteEngine";
+    private static final long ROUTE_TICK = 100;     /* 路径位置的更新周期，单位 ms */
+    private static final int ROUTE_MSG_TICK = 0;    /* arg1 为发出该消息时的 mPlayGeneration */
+    // 位置由独立线程根据实际经过的时间计算，主线程卡顿不会影响移动速度
+    private final HandlerThread mRouteThread;
+    private final Handler mRouteHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    // 主线程写入，路径线程读取
+    private volatile RouteListener mRouteListener;
     private boolean isLoopMode = true;
-    private boolean isSpeedChanged = false;
+    // 以下播放状态由 mPlayLock 保护，主线程和路径线程都会访问
+    private final Object mPlayLock = new Object();
     private double mMoveSpeed = 1.0;
+    private CompiledRoute mPlayRoute;       /* 开始播放时编译的路径 */
+    private double mPlayDistance = 0;       /* 锚点时刻已经走过的距离，单位 m */
+    private long mPlayAnchorTime = 0;       /* 锚点时刻，SystemClock.elapsedRealtime */
+    private final double[] mPlayPosition = new double[2];   /* 仅路径线程使用 */
+    // 每次开始、暂停、停止都加一，携带旧值的 tick 消息不再发送位置也不再续发，同一时刻只有一条 tick 链
+    private int mPlayGeneration = 0;
 
     // 状态机定义
     public enum RouteState {
@@ -47,11 +81,20 @@ public class RouteManager {
         PAUSED      // 已暂停
     }
 
-    private RouteState mCurrentState = RouteState.IDLE;
+    private volatile RouteState mCurrentState = RouteState.IDLE;
 
     // 私有构造函数
     private RouteManager() {
         // 防止外部实例化
+        mRouteThread = new HandlerThread(ROUTE_ENGINE_NAME, Process.THREAD_PRIORITY_FOREGROUND);
+        mRouteThread.start();
+        mRouteHandler = new Handler(mRouteThread.getLooper(), msg -> {
+            if (msg.what == ROUTE_MSG_TICK) {
+                onRouteTick(msg.arg1);
+                return true;
+            }
+            return false;
+        });
     }
 
     /**
@@ -88,10 +131,8 @@ public class RouteManager {
         stopRoute();
         mPoints.clear();
         clearRoute();
-        mRouteIndex = 0;
         mRouteListener = null;
         isLoopMode = true;
-        isSpeedChanged = false;
         mCurrentState = RouteState.IDLE;
     }
 
@@ -110,6 +151,8 @@ public class RouteManager {
             if (sInstance != null) {
                 sInstance.stopRoute();
                 sInstance.mRouteHandler.removeCallbacksAndMessages(null);
+                sInstance.mRouteThread.quit();
+                sInstance.mMainHandler.removeCallbacksAndMessages(null);
                 sInstance.mPoints.clear();
                 sInstance.clearRoute();
                 sInstance.mRouteListener = null;
@@ -123,7 +166,15 @@ public class RouteManager {
     }
 
     public void setmMoveSpeed(double mMoveSpeed) {
-        this.mMoveSpeed = mMoveSpeed;
+        synchronized (mPlayLock) {
+            // 运行中修改速度时，先按原速度结算已经走过的距离，再以新速度继续
+            if (mCurrentState == RouteState.RUNNING) {
+                long now = SystemClock.elapsedRealtime();
+                mPlayDistance = getPlayDistance(now);
+                mPlayAnchorTime = now;
+            }
+            this.mMoveSpeed = mMoveSpeed;
+        }
     }
 
     public void setLoopMode(boolean loopMode) {
@@ -142,7 +193,10 @@ public class RouteManager {
             BitmapDescriptorFactory.fromResource(R.drawable.icon_gcoding);
 
     public interface RouteListener {
-        void onPositionUpdate(double wgsLng, double wgsLat);
+        // 在路径线程中回调，其余回调均在主线程中
+        // 回调时持有播放状态锁，只应发布位置，不能等待主线程
+        // bearing 为当前路段的方位角（度），speed 为移动速度（m/s），走完全程时为 0
+        void onPositionUpdate(double wgsLng, double wgsLat, float bearing, double speed);
 
         void onRouteStarted();
 
@@ -176,7 +230,30 @@ public class RouteManager {
         checkInitialized();
         if (mPoints.isEmpty()) return;
         mPoints.remove(mPoints.size() - 1);
-        redrawRoute();
+        if (mPoints.size() < mBaseCount) {
+            // 撤销到导入的路线内部时重新抽稀
+            redrawRoute();
+            return;
+        }
+        if (!mMarkers.isEmpty()) {
+            Overlay marker = mMarkers.remove(mMarkers.size() - 1);
+            if (marker != null) {
+                marker.remove();
+            }
+        }
+        drawLine();
+    }
+
+    /**
+     * 地图缩放结束后调用，按新的缩放档位切换抽稀后的折线
+     */
+    public void onMapZoomChanged(float zoom) {
+        if (mBaseCount == 0) return;
+
+        int band = RouteSimplifier.zoomBand(zoom);
+        if (band != mBaseBand) {
+            drawBase(band);
+        }
     }
 
     public List<LatLng> getPoints() {
@@ -196,35 +273,28 @@ public class RouteManager {
     }
 
     /**
-     * 保存路径到JSON文件
+     * 保存路径到文件，扩展名为 .json 时保存为 JSON，否则保存为二进制格式
      */
     public boolean saveRouteToFile(String filePath) {
         if (mPoints.isEmpty()) {
             return false;
         }
 
-        try {
-            JSONObject routeJson = new JSONObject();
-            JSONArray pointsArray = new JSONArray();
-
-            for (LatLng point : mPoints) {
-                JSONObject pointJson = new JSONObject();
-                pointJson.put("longitude", point.longitude);
-                pointJson.put("latitude", point.latitude);
-                pointsArray.put(pointJson);
-            }
-
-            routeJson.put("points", pointsArray);
-            routeJson.put("loopMode", isLoopMode);
-            routeJson.put("speed", mMoveSpeed);
-            routeJson.put("timestamp", System.currentTimeMillis());
+        int size = mPoints.size();
+        double[] lng = new double[size];
+        double[] lat = new double[size];
+        for (int i = 0; i < size; i++) {
+            lng[i] = mPoints.get(i).longitude;
+            lat[i] = mPoints.get(i).latitude;
+        }
 
-            // 写入文件
-            FileWriter fileWriter = new FileWriter(filePath);
-            fileWriter.write(routeJson.toString());
-            fileWriter.flush();
-            fileWriter.close();
+        RouteFile route = new RouteFile(lng, lat);
+        route.isLoop = isLoopMode;
+        route.moveSpeed = mMoveSpeed;
+        route.timestamp = System.currentTimeMillis();
 
+        try {
+            writeRoute(route, new File(filePath));
             return true;
         } catch (JSONException | IOException e) {
             Log.e("RouteManager", "保存路径失败: " + e.getMessage());
@@ -233,7 +303,7 @@ public class RouteManager {
     }
 
     /**
-     * 从JSON文件加载路径
+     * 从文件加载路径，根据文件头自动识别二进制格式和旧的 JSON 格式
      */
     public boolean loadRouteFromFile(String filePath) {
         try {
@@ -242,23 +312,11 @@ public class RouteManager {
                 return false;
             }
 
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            StringBuilder stringBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                stringBuilder.append(line);
-            }
-            reader.close();
-
-            JSONObject routeJson = new JSONObject(stringBuilder.toString());
-            JSONArray pointsArray = routeJson.getJSONArray("points");
+            RouteFile route = readRoute(file);
 
-            List<LatLng> loadedPoints = new ArrayList<>();
-            for (int i = 0; i < pointsArray.length(); i++) {
-                JSONObject pointJson = pointsArray.getJSONObject(i);
-                double longitude = pointJson.getDouble("longitude");
-                double latitude = pointJson.getDouble("latitude");
-                loadedPoints.add(new LatLng(latitude, longitude));
+            List<LatLng> loadedPoints = new ArrayList<>(route.size());
+            for (int i = 0; i < route.size(); i++) {
+                loadedPoints.add(new LatLng(route.lat[i], route.lng[i]));
             }
 
             // 停止当前路径
@@ -269,12 +327,8 @@ public class RouteManager {
             mPoints.addAll(loadedPoints);
 
             // 设置其他参数
-            if (routeJson.has("loopMode")) {
-                isLoopMode = routeJson.getBoolean("loopMode");
-            }
-            if (routeJson.has("speed")) {
-                mMoveSpeed = routeJson.getDouble("speed");
-            }
+            isLoopMode = route.isLoop;
+            mMoveSpeed = route.moveSpeed;
 
             // 重绘路径
             redrawRoute();
@@ -286,6 +340,95 @@ public class RouteManager {
         }
     }
 
+    /**
+     * 用导入的轨迹替换当前路径，速度保持不变，导入的轨迹默认不闭合
+     */
+    public void importRoute(RouteFile route) {
+        checkInitialized();
+        stopRoute();
+
+        mPoints.clear();
+        for (int i = 0; i < route.size(); i++) {
+            mPoints.add(new LatLng(route.lat[i], route.lng[i]));
+        }
+        isLoopMode = route.isLoop;
+
+        redrawRoute();
+    }
+
+    /**
+     * 在二进制和 JSON 格式之间转换路径文件，目标格式由扩展名决定，不影响当前路径
+     */
+    public boolean convertRouteFile(String srcPath, String dstPath) {
+        try {
+            writeRoute(readRoute(new File(srcPath)), new File(dstPath));
+            return true;
+        } catch (JSONException | IOException e) {
+            Log.e("RouteManager", "转换路径失败: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private RouteFile readRoute(File file) throws IOException, JSONException {
+        if (RouteFile.isBinary(file)) {
+            return RouteFile.read(file);
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        StringBuilder stringBuilder = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            stringBuilder.append(line);
+        }
+        reader.close();
+
+        JSONObject routeJson = new JSONObject(stringBuilder.toString());
+        JSONArray pointsArray = routeJson.getJSONArray("points");
+
+        int size = pointsArray.length();
+        double[] lng = new double[size];
+        double[] lat = new double[size];
+        for (int i = 0; i < size; i++) {
+            JSONObject pointJson = pointsArray.getJSONObject(i);
+            lng[i] = pointJson.getDouble("longitude");
+            lat[i] = pointJson.getDouble("latitude");
+        }
+
+        RouteFile route = new RouteFile(lng, lat);
+        route.isLoop = routeJson.optBoolean("loopMode", isLoopMode);
+        route.moveSpeed = routeJson.optDouble("speed", mMoveSpeed);
+        route.timestamp = routeJson.optLong("timestamp", 0);
+        return route;
+    }
+
+    private void writeRoute(RouteFile route, File file) throws IOException, JSONException {
+        if (!file.getName().endsWith(RouteFile.EXT_JSON)) {
+            route.write(file);
+            return;
+        }
+
+        JSONObject routeJson = new JSONObject();
+        JSONArray pointsArray = new JSONArray();
+
+        for (int i = 0; i < route.size(); i++) {
+            JSONObject pointJson = new JSONObject();
+            pointJson.put("longitude", route.lng[i]);
+            pointJson.put("latitude", route.lat[i]);
+            pointsArray.put(pointJson);
+        }
+
+        routeJson.put("points", pointsArray);
+        routeJson.put("loopMode", route.isLoop);
+        routeJson.put("speed", route.moveSpeed);
+        routeJson.put("timestamp", route.timestamp);
+
+        // 写入文件
+        FileWriter fileWriter = new FileWriter(file);
+        fileWriter.write(routeJson.toString());
+        fileWriter.flush();
+        fileWriter.close();
+    }
+
     /**
      * 获取保存的路径列表
      */
@@ -294,7 +437,7 @@ public class RouteManager {
         File directory = new File(directoryPath);
 
         if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(RouteFile.EXT_BINARY) || name.endsWith(RouteFile.EXT_JSON));
             if (files != null) {
                 for (File file : files) {
                     routeFiles.add(file.getName());
@@ -306,46 +449,132 @@ public class RouteManager {
     }
 
 
+    /**
+     * 同步最后一段折线，其余已经画满的分段保持不动
+     */
     private void drawLine() {
-        if (mPoints.size() < 2) return;
+        int start = mBaseCount > 0 ? mBaseCount - 1 : 0;    // 与抽稀部分共用连接点
+        int size = mPoints.size();
+        int chunks = size - start < 2 ? 0 : (size - start - 2) / ROUTE_CHUNK_SIZE + 1;
 
-        if (mPolyline != null) {
-            mPolyline.remove();
+        while (mPolylines.size() > chunks) {
+            mPolylines.remove(mPolylines.size() - 1).remove();
         }
+        if (chunks == 0) return;
 
-        PolylineOptions polylineOptions = new PolylineOptions()
-                .points(mPoints)
-                .width(8)
-                .color(Color.RED);
-        mPolyline = (Polyline) mBaiduMap.addOverlay(polylineOptions);
-    }
+        // 相邻分段共用边界点，保证折线连续
+        int from = start + (chunks - 1) * ROUTE_CHUNK_SIZE;
+        List<LatLng> tail = new ArrayList<>(mPoints.subList(from, size));
 
+        if (mPolylines.size() == chunks) {
+            mPolylines.get(chunks - 1).setPoints(tail);
+        } else {
+            PolylineOptions polylineOptions = new PolylineOptions()
+                    .points(tail)
+                    .width(8)
+                    .color(Color.RED);
+            mPolylines.add((Polyline) mBaiduMap.addOverlay(polylineOptions));
+        }
+    }
     private void addMarker(LatLng point) {
         MarkerOptions markerOptions = new MarkerOptions()
                 .position(point)
                 .icon(MAP_INDICATOR);
-        mBaiduMap.addOverlay(markerOptions);
+        mMarkers.add(mBaiduMap.addOverlay(markerOptions));
     }
 
     private void redrawRoute() {
         checkInitialized();
-        mBaiduMap.clear();
-        if (mPoints.size() >= 2) {
-            drawLine();
+        clearRoute();
+
+        int size = mPoints.size();
+        if (size > SIMPLIFY_MIN_POINTS) {
+            // 长路线只给起点和终点加标记，否则逐点标记会让地图卡死
+            mBaseCount = size;
+            mBaseLng = new double[size];
+            mBaseLat = new double[size];
+            for (int i = 0; i < size; i++) {
+                mBaseLng[i] = mPoints.get(i).longitude;
+                mBaseLat[i] = mPoints.get(i).latitude;
+            }
+            MapStatus status = mBaiduMap.getMapStatus();
+            drawBase(RouteSimplifier.zoomBand(status != null ? status.zoom : RouteSimplifier.MAX_ZOOM));
+
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || i == size - 1) {
+                    addMarker(mPoints.get(i));
+                } else {
+                    mMarkers.add(null);
+                }
+            }
+            return;
+        }
+
+        for (int from = 0; from < size - 1; from += ROUTE_CHUNK_SIZE) {
+            int to = Math.min(from + ROUTE_CHUNK_SIZE + 1, size);
+            PolylineOptions polylineOptions = new PolylineOptions()
+                    .points(new ArrayList<>(mPoints.subList(from, to)))
+                    .width(8)
+                    .color(Color.RED);
+            mPolylines.add((Polyline) mBaiduMap.addOverlay(polylineOptions));
         }
         for (LatLng point : mPoints) {
             addMarker(point);
         }
     }
 
+    /**
+     * 绘制导入路线在某缩放档位下的抽稀折线，结果按档位缓存
+     */
+    private void drawBase(int band) {
+        for (Overlay polyline : mBasePolylines) {
+            polyline.remove();
+        }
+        mBasePolylines.clear();
+        mBaseBand = band;
+
+        int[] indices = mBaseBands[band];
+        if (indices == null) {
+            double tolerance = RouteSimplifier.toleranceForBand(band, mBaseLat[0]);
+            indices = RouteSimplifier.simplify(mBaseLng, mBaseLat, mBaseCount, tolerance);
+            mBaseBands[band] = indices;
+        }
+
+        for (int from = 0; from < indices.length - 1; from += BASE_CHUNK_SIZE - 1) {
+            int to = Math.min(from + BASE_CHUNK_SIZE, indices.length);
+            List<LatLng> points = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                points.add(mPoints.get(indices[i]));
+            }
+            PolylineOptions polylineOptions = new PolylineOptions()
+                    .points(points)
+                    .width(8)
+                    .color(Color.RED);
+            mBasePolylines.add((Polyline) mBaiduMap.addOverlay(polylineOptions));
+        }
+    }
+
     private void clearRoute() {
-        if (mBaiduMap != null) {
-            mBaiduMap.clear();
+        // 只移除路线自己的覆盖物，不影响地图上的其他标记
+        for (Overlay polyline : mPolylines) {
+            polyline.remove();
+        }
+        for (Overlay marker : mMarkers) {
+            if (marker != null) {
+                marker.remove();
+            }
         }
-        if (mPolyline != null) {
-            mPolyline.remove();
-            mPolyline = null;
+        for (Overlay polyline : mBasePolylines) {
+            polyline.remove();
         }
+        mPolylines.clear();
+        mMarkers.clear();
+        mBasePolylines.clear();
+        mBaseCount = 0;
+        mBaseLng = null;
+        mBaseLat = null;
+        Arrays.fill(mBaseBands, null);
+        mBaseBand = -1;
     }
 
     public void startRoute(double speed) {
@@ -357,26 +586,10 @@ public class RouteManager {
             return;
         }
 
-        mMoveSpeed = speed;
+        setmMoveSpeed(speed);
         Log.d("RM", "Speed=" + mMoveSpeed);
 
-        // 如果是从暂停状态恢复，不需要重置索引
-        if (mCurrentState == RouteState.IDLE) {
-            mRouteIndex = 0;
-        }
-
-        // 更新状态为运行中
-        setState(RouteState.RUNNING);
-
-        if (mRouteListener != null) {
-            if (mCurrentState == RouteState.IDLE) {
-                mRouteListener.onRouteStarted();
-            } else {
-                mRouteListener.onRouteResumed();
-            }
-        }
-
-        moveToNextPoint();
+        beginRoute();
     }
     public void startRoute() {
         checkInitialized();
@@ -389,23 +602,7 @@ public class RouteManager {
 
         Log.d("RM", "Speed=" + mMoveSpeed);
 
-        // 如果是从暂停状态恢复，不需要重置索引
-        if (mCurrentState == RouteState.IDLE) {
-            mRouteIndex = 0;
-        }
-
-        // 更新状态为运行中
-        setState(RouteState.RUNNING);
-
-        if (mRouteListener != null) {
-            if (mCurrentState == RouteState.IDLE) {
-                mRouteListener.onRouteStarted();
-            } else {
-                mRouteListener.onRouteResumed();
-            }
-        }
-
-        moveToNextPoint();
+        beginRoute();
     }
     public void pauseRoute() {
         checkInitialized();
@@ -417,8 +614,13 @@ public class RouteManager {
         // 移除所有待执行的回调
         mRouteHandler.removeCallbacksAndMessages(null);
 
-        // 更新状态为暂停
-        setState(RouteState.PAUSED);
+        // 记录暂停时已经走过的距离，恢复时从这里继续
+        synchronized (mPlayLock) {
+            mPlayGeneration++;
+            mPlayDistance = getPlayDistance(SystemClock.elapsedRealtime());
+            // 更新状态为暂停
+            setState(RouteState.PAUSED);
+        }
 
         if (mRouteListener != null) {
             mRouteListener.onRoutePaused();
@@ -432,11 +634,13 @@ public class RouteManager {
         }
 
         mRouteHandler.removeCallbacksAndMessages(null);
-        mRouteIndex = 0;
-        isSpeedChanged = false;
 
-        // 更新状态为空闲
-        setState(RouteState.IDLE);
+        synchronized (mPlayLock) {
+            mPlayGeneration++;
+            mPlayDistance = 0;
+            // 更新状态为空闲
+            setState(RouteState.IDLE);
+        }
 
         if (mRouteListener != null) {
             mRouteListener.onRouteStopped();
@@ -453,9 +657,6 @@ public class RouteManager {
 
         // 清除地图上的路线和标记
         clearRoute();
-
-        // 重置路线索引
-        mRouteIndex = 0;
     }
 
     /**
@@ -476,102 +677,99 @@ public class RouteManager {
         EventBus.getDefault().post(new RouteStateEvent(newState));
     }
 
-    private void moveToNextPoint() {
-        // 检查状态是否允许继续移动
-        if (mCurrentState != RouteState.RUNNING) {
-            return;
-        }
+    private void beginRoute() {
+        // 如果是从暂停状态恢复，不需要重置索引和已走过的距离
+        boolean isResume = mCurrentState == RouteState.PAUSED;
+        int generation;
 
-        // 检查是否到达终点
-        if (mRouteIndex >= mPoints.size() - 1) {
-            if (isLoopMode && mPoints.size() >= 2) {
-                // 闭合模式：从终点移动到起点
-                LatLng currentPoint = mPoints.get(mRouteIndex);
-                LatLng nextPoint = mPoints.get(0); // 回到起点
+        synchronized (mPlayLock) {
+            generation = ++mPlayGeneration;
+            if (!isResume) {
+                mPlayRoute = compileRoute(mPoints, isLoopMode);
+                mPlayDistance = 0;
+            }
+            mPlayAnchorTime = SystemClock.elapsedRealtime();
 
-                double distance = MapUtils.getDistance(currentPoint, nextPoint);
-                long moveTime = (long) (distance / mMoveSpeed * 1000);
+            // 更新状态为运行中
+            setState(RouteState.RUNNING);
+        }
 
-                double[] wgsCurrent = MapUtils.bd2wgs(currentPoint.longitude, currentPoint.latitude);
-                double[] wgsNext = MapUtils.bd2wgs(nextPoint.longitude, nextPoint.latitude);
-                // 重置索引为-1，因为 smoothMove 完成后会执行 mRouteIndex++
-                mRouteIndex = -1;
-                smoothMove(wgsCurrent[0], wgsCurrent[1], wgsNext[0], wgsNext[1], moveTime, 0);
+        if (mRouteListener != null) {
+            if (isResume) {
+                mRouteListener.onRouteResumed();
             } else {
-                // 非闭合模式：正常结束
-                if (mRouteListener != null) {
-                    mRouteListener.onRouteFinished();
-                    EventBus.getDefault().post(new RouteStateEvent(mCurrentState));
-                }
-                setState(RouteState.IDLE);
+                mRouteListener.onRouteStarted();
             }
-            return;
         }
 
-        LatLng currentPoint = mPoints.get(mRouteIndex);
-        LatLng nextPoint = mPoints.get(mRouteIndex + 1);
-
-        double distance = MapUtils.getDistance(currentPoint, nextPoint);
-        long moveTime = (long) (distance / mMoveSpeed * 1000);
-
-        double[] wgsCurrent = MapUtils.bd2wgs(currentPoint.longitude, currentPoint.latitude);
-        double[] wgsNext = MapUtils.bd2wgs(nextPoint.longitude, nextPoint.latitude);
+        mRouteHandler.removeMessages(ROUTE_MSG_TICK);
+        mRouteHandler.sendMessage(Message.obtain(mRouteHandler, ROUTE_MSG_TICK, generation, 0));
+    }
 
-        smoothMove(wgsCurrent[0], wgsCurrent[1], wgsNext[0], wgsNext[1], moveTime, 0);
+    // 根据实际经过的时间计算已经走过的距离，调用方需持有 mPlayLock
+    private double getPlayDistance(long now) {
+        return mPlayDistance + (now - mPlayAnchorTime) * mMoveSpeed / 1000.0;
     }
 
-    private void smoothMove(double startLng, double startLat, double endLng, double endLat,
-                            long totalTime, long elapsedTime) {
-        // 检查状态是否允许继续移动
-        if (mCurrentState != RouteState.RUNNING) {
-            return;
+    /**
+     * 将百度坐标的路径点编译为 WGS-84 坐标和累计距离，每次开始播放只转换一次
+     */
+    private static CompiledRoute compileRoute(List<LatLng> points, boolean loop) {
+        int size = points.size();
+        double[] lng = new double[size];
+        double[] lat = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            LatLng point = points.get(i);
+            lng[i] = point.longitude;
+            lat[i] = point.latitude;
         }
+        // 路线点数可能很多，使用偏移量网格，集中在同一区域的点只需计算少数几个分块
+        MapUtils.bd2wgsGrid(lng, lat, lng, lat, size);
 
-        // 检查速度是否已更改，如果是则重新计算移动时间
-        if (isSpeedChanged) {
-            isSpeedChanged = false;
-
-            // 重新计算剩余距离所需的时间
-            double remainingDistance = MapUtils.getDistance(
-                    new LatLng(startLat, startLng),
-                    new LatLng(endLat, endLng)
-            ) * (1 - (float) elapsedTime / totalTime);
+        return new CompiledRoute(lng, lat, loop);
+    }
 
-            totalTime = (long) (remainingDistance / mMoveSpeed * 1000);
-            elapsedTime = 0; // 重置已用时间
-        }
+    // 在路径线程中执行
+    // 发送位置和续发都在锁内进行：pauseRoute/stopRoute 返回后不会再有位置更新，也不会留下第二条 tick 链
+    private void onRouteTick(int generation) {
+        synchronized (mPlayLock) {
+            // 检查这条 tick 链是否仍然有效
+            if (generation != mPlayGeneration || mCurrentState != RouteState.RUNNING) {
+                return;
+            }
 
-        float progress = (float) elapsedTime / totalTime;
-        if (progress > 1.0f) progress = 1.0f;
+            double distance = getPlayDistance(SystemClock.elapsedRealtime());
+            boolean finished = mPlayRoute.isFinished(distance);
+            mPlayRoute.positionAt(distance, mPlayPosition);
 
-        double currentLng = startLng + (endLng - startLng) * progress;
-        double currentLat = startLat + (endLat - startLat) * progress;
+            RouteListener listener = mRouteListener;
+            if (listener != null) {
+                listener.onPositionUpdate(mPlayPosition[0], mPlayPosition[1],
+                        (float) mPlayRoute.bearingAt(distance), finished ? 0 : mMoveSpeed);
+            }
 
-        if (mRouteListener != null) {
-            mRouteListener.onPositionUpdate(currentLng, currentLat);
+            if (finished) {
+                mMainHandler.post(() -> finishRoute(generation));
+            } else {
+                mRouteHandler.sendMessageDelayed(Message.obtain(mRouteHandler, ROUTE_MSG_TICK, generation, 0), ROUTE_TICK);
+            }
         }
+    }
 
-        if (progress < 1.0f) {
-            final long newElapsedTime = elapsedTime + 100;
-            final long newTotalTime = totalTime;
-            mRouteHandler.postDelayed(() ->
-                    smoothMove(startLng, startLat, endLng, endLat, newTotalTime, newElapsedTime), 100);
-        } else {
-            // 移动到下一个点
-            mRouteIndex++;
-
-            if (isLoopMode && mRouteIndex >= mPoints.size()) {
-                mRouteIndex = 0;
+    // 在主线程中执行：非闭合模式下走完全程
+    private void finishRoute(int generation) {
+        synchronized (mPlayLock) {
+            // 走完后已经被停止或重新开始时，不再结束新的播放
+            if (generation != mPlayGeneration || mCurrentState != RouteState.RUNNING) {
+                return;
             }
+            mPlayDistance = 0;
+        }
 
-            if (mRouteIndex >= mPoints.size() - 1 && !isLoopMode) {
-                if (mRouteListener != null) {
-                    mRouteListener.onRouteFinished();
-                }
-                setState(RouteState.IDLE);
-            } else {
-                moveToNextPoint();
-            }
+        if (mRouteListener != null) {
+            mRouteListener.onRouteFinished();
         }
+        setState(RouteState.IDLE);
     }
-}
\ No newline at end of file
+}
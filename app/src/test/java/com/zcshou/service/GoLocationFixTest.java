@@ -0,0 +1,83 @@
+package com.zcshou.service;
+
+import android.location.Location;
+import android.location.LocationManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查发送线程每次更新模拟位置时不分配新对象
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GoLocationFixTest {
+    private static final int POSITION_COUNT = 64;
+    private static final int WARMUP_TICKS = 10000;
+    private static final int SHORT_TICKS = 1000;
+    private static final int LONG_TICKS = 100000;
+    private static final long ALLOCATION_SLACK = 4096;  /* 测量本身的少量分配，单位 byte */
+
+    // 位置快照在测量前创建好，测量中只有 update 自身的分配
+    private final GoPosition[] mPositions = new GoPosition[POSITION_COUNT];
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long runTicks(GoLocationFix gps, GoLocationFix network, int ticks) {
+        long before = allocatedBytes();
+        for (int i = 0; i < ticks; i++) {
+            GoPosition pos = mPositions[i % POSITION_COUNT];
+            gps.update(pos, 1700000000000L + i * 100L, i * 100000000L);
+            network.update(pos, 1700000000000L + i * 100L, i * 100000000L);
+        }
+        return allocatedBytes() - before;
+    }
+
+    @Test
+    public void update_setsAllFields() {
+        GoLocationFix gps = GoLocationFix.gps();
+        Location loc = gps.update(new GoPosition(117.0, 36.0, 55.0, 90.0F, 1.2), 1700000000000L, 123456789L);
+
+        assertEquals(LocationManager.GPS_PROVIDER, loc.getProvider());
+        assertEquals(117.0, loc.getLongitude(), 0);
+        assertEquals(36.0, loc.getLatitude(), 0);
+        assertEquals(55.0, loc.getAltitude(), 0);
+        assertEquals(90.0F, loc.getBearing(), 0);
+        assertEquals(1.2F, loc.getSpeed(), 0);
+        assertEquals(1700000000000L, loc.getTime());
+        assertEquals(123456789L, loc.getElapsedRealtimeNanos());
+        assertEquals(7, loc.getExtras().getInt("satellites"));
+        // 每次返回同一个 Location
+        assertSame(loc, gps.update(new GoPosition(117.1, 36.1, 55.0, 0.0F, 0.0), 1700000000100L, 223456789L));
+        assertEquals(117.1, loc.getLongitude(), 0);
+
+        assertEquals(LocationManager.NETWORK_PROVIDER, GoLocationFix.network().update(
+                new GoPosition(117.0, 36.0, 55.0, 0.0F, 1.2), 0, 0).getProvider());
+    }
+
+    @Test
+    public void update_allocationStaysFlat() {
+        for (int i = 0; i < POSITION_COUNT; i++) {
+            mPositions[i] = new GoPosition(117.0 + i * 1e-5, 36.0 + i * 1e-5, 55.0, i * 5.0F, 1.2);
+        }
+        GoLocationFix gps = GoLocationFix.gps();
+        GoLocationFix network = GoLocationFix.network();
+
+        // 预热，排除类加载和 JIT 编译期间的分配
+        runTicks(gps, network, WARMUP_TICKS);
+
+        long shortBytes = runTicks(gps, network, SHORT_TICKS);
+        long longBytes = runTicks(gps, network, LONG_TICKS);
+        // 次数增加 100 倍，分配量不随之增长
+        assertTrue("allocated " + shortBytes + " bytes in " + SHORT_TICKS + " ticks, "
+                        + longBytes + " bytes in " + LONG_TICKS + " ticks",
+                longBytes <= shortBytes + ALLOCATION_SLACK);
+    }
+}
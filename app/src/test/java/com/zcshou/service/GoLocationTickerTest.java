@@ -0,0 +1,95 @@
+package com.zcshou.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 在虚拟时钟上检查发送节拍的计算，通过 ServiceGoBinder 发送的实际时间见 ServiceGoTest
+ */
+public class GoLocationTickerTest {
+    private static final long PERIOD = 100;
+    private static final long IDLE_PERIOD = 1000;
+    private static final long IDLE_DELAY = 1000;
+
+    private final AtomicReference<GoPosition> mCurPos =
+            new AtomicReference<>(new GoPosition(117.0, 36.0, 55.0, 0.0F, 1.2));
+    private final List<Long> mFixTimes = new ArrayList<>();
+    private GoLocationTicker mTicker;
+    private long mPendingTick;
+
+    // 处理所有不晚于 time 的发送消息
+    private void runTicksUntil(long time) {
+        while (mPendingTick >= 0 && mPendingTick <= time) {
+            long now = mPendingTick;
+            mFixTimes.add(now);
+            mPendingTick = mTicker.next(mCurPos.get(), now);
+        }
+    }
+
+    @Test
+    public void moving_keepsFullRate() {
+        mTicker = new GoLocationTicker(PERIOD, IDLE_PERIOD, IDLE_DELAY, true);
+        mPendingTick = mTicker.start(0);
+
+        // 每个周期都换一个新的位置快照
+        while (mPendingTick <= 5000) {
+            GoPosition cur = mCurPos.get();
+            mCurPos.set(cur.withLngLatAlt(cur.lng + 1e-6, cur.lat, cur.alt));
+            runTicksUntil(mPendingTick);
+        }
+        assertFalse(mTicker.isIdle());
+        assertEquals(51, mFixTimes.size());
+    }
+
+    @Test
+    public void stationary_dropsToIdleRateAndResumesOnMove() {
+        mTicker = new GoLocationTicker(PERIOD, IDLE_PERIOD, IDLE_DELAY, true);
+        mPendingTick = mTicker.start(0);
+
+        runTicksUntil(5000);
+        assertTrue(mTicker.isIdle());
+        // 进入静止状态之后按保活周期发送
+        int size = mFixTimes.size();
+        assertEquals(IDLE_PERIOD, mFixTimes.get(size - 1) - mFixTimes.get(size - 2));
+
+        runTicksUntil(5050);
+        mCurPos.set(mCurPos.get().withLngLatAlt(117.1, 36.1, 55.0));
+        mPendingTick = mTicker.resume(5050);
+        assertFalse(mTicker.isIdle());
+        runTicksUntil(5350);
+        // 移动后立即发送一次，然后恢复正常周期
+        assertEquals(Long.valueOf(5050), mFixTimes.get(size));
+        for (int i = size + 1; i < mFixTimes.size(); i++) {
+            assertEquals(PERIOD, mFixTimes.get(i) - mFixTimes.get(i - 1));
+        }
+    }
+
+    @Test
+    public void nonAdaptive_keepsFullRate() {
+        mTicker = new GoLocationTicker(PERIOD, IDLE_PERIOD, IDLE_DELAY, false);
+        mPendingTick = mTicker.start(0);
+
+        runTicksUntil(5000);
+        assertFalse(mTicker.isIdle());
+        assertEquals(51, mFixTimes.size());
+    }
+
+    @Test
+    public void lateTick_skipsMissedDeadlines() {
+        mTicker = new GoLocationTicker(PERIOD, IDLE_PERIOD, IDLE_DELAY, false);
+        assertEquals(0, mTicker.start(0));
+        GoPosition pos = mCurPos.get();
+
+        assertEquals(100, mTicker.next(pos, 5));
+        // 本次发送拖到了 350ms，200 和 300 两个周期被跳过，节拍仍然对齐
+        assertEquals(400, mTicker.next(pos, 350));
+        assertEquals(2, mTicker.getMissedCount());
+        assertEquals(500, mTicker.next(pos, 402));
+        assertEquals(2, mTicker.getMissedCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.zcshou.service;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.SystemClock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowLocationManager;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * 通过 ServiceGoBinder 更新位置，在暂停的 ServiceGoLocation 线程上逐条执行消息，检查实际发出的模拟位置的时间
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(shadows = ServiceGoTest.ShadowTestProviderLocationManager.class)
+public class ServiceGoTest {
+    private static final long PERIOD = 100;         /* 默认 10 Hz */
+    private static final long IDLE_PERIOD = 1000;   /* 默认静止时 1 Hz */
+
+    // 摇杆的地图依赖百度地图的 native 库，只运行位置发送
+    public static class LocationOnlyServiceGo extends ServiceGo {
+        @Override
+        void initJoyStick() {
+        }
+
+        @Override
+        void setJoyStickPosition(double lng, double lat, double alt) {
+        }
+
+        @Override
+        void destroyJoyStick() {
+        }
+    }
+
+    // Robolectric 没有实现测试 provider，在这里记下每次发出的 GPS 模拟位置上的开机时间，单位 ms
+    @Implements(LocationManager.class)
+    public static class ShadowTestProviderLocationManager extends ShadowLocationManager {
+        private static final List<Long> sGpsFixTimes = new ArrayList<>();
+
+        @Implementation
+        protected void setTestProviderLocation(String provider, Location loc) {
+            if (LocationManager.GPS_PROVIDER.equals(provider)) {
+                synchronized (sGpsFixTimes) {
+                    sGpsFixTimes.add(loc.getElapsedRealtimeNanos() / 1000000);
+                }
+            }
+        }
+    }
+
+    private ServiceController<LocationOnlyServiceGo> mController;
+    private ServiceGo.ServiceGoBinder mBinder;
+    private ShadowLooper mLocLooper;
+    private long mStartTime;
+
+    @Before
+    public void setUp() {
+        synchronized (ShadowTestProviderLocationManager.sGpsFixTimes) {
+            ShadowTestProviderLocationManager.sGpsFixTimes.clear();
+        }
+        mStartTime = SystemClock.elapsedRealtime();
+
+        mController = Robolectric.buildService(LocationOnlyServiceGo.class).create();
+        ServiceGo service = mController.get();
+        mBinder = (ServiceGo.ServiceGoBinder) service.onBind(null);
+        // 暂停发送线程：时钟只由测试推进，每条消息都在它预定的时间点执行
+        mLocLooper = shadowOf(service.getLocationLooper());
+        mLocLooper.pause();
+    }
+
+    @After
+    public void tearDown() {
+        mController.destroy();
+    }
+
+    // 推进时钟，返回到目前为止发出的 GPS 模拟位置的时间，相对于服务启动的时间
+    private List<Long> runFor(long millis) {
+        mLocLooper.idleFor(millis, TimeUnit.MILLISECONDS);
+        List<Long> times = new ArrayList<>();
+        synchronized (ShadowTestProviderLocationManager.sGpsFixTimes) {
+            for (long time : ShadowTestProviderLocationManager.sGpsFixTimes) {
+                times.add(time - mStartTime);
+            }
+        }
+        return times;
+    }
+
+    @Test
+    public void setPosition_doesNotDisturbCadence() {
+        // 模拟路径播放：10000 次 setPosition，间隔 100ms 左右并带有主线程抖动
+        Random random = new Random(42);
+        long now = 0;
+        for (int i = 0; i < 10000; i++) {
+            long step = 80 + random.nextInt(41);
+            runFor(step);
+            now += step;
+            mBinder.setPosition(117.0 + i * 1e-6, 36.0 + i * 1e-6, 55.0);
+        }
+        List<Long> fixTimes = runFor(0);
+
+        // 启动时立即发送一次，之后每个周期一次，与 setPosition 的时间无关
+        assertEquals(now / PERIOD + 1, fixTimes.size());
+        for (int i = 0; i < fixTimes.size(); i++) {
+            assertEquals(i * PERIOD, (long) fixTimes.get(i));
+        }
+        assertEquals(0, mBinder.getMissedLocationCount());
+    }
+
+    @Test
+    public void stationary_dropsToIdleRateAndResumesOnMove() {
+        List<Long> fixTimes = runFor(5050);
+        // 位置保持不变 1s 之后按保活周期发送
+        int size = fixTimes.size();
+        assertEquals(5000, (long) fixTimes.get(size - 1));
+        assertEquals(IDLE_PERIOD, fixTimes.get(size - 1) - fixTimes.get(size - 2));
+
+        mBinder.setPosition(117.1, 36.1, 55.0);
+        fixTimes = runFor(300);
+        // 移动后立即发送一次，然后恢复正常周期
+        assertEquals(size + 4, fixTimes.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(5050 + i * PERIOD, (long) fixTimes.get(size + i));
+        }
+    }
+}
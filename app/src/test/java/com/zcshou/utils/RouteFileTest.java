@@ -0,0 +1,117 @@
+package com.zcshou.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class RouteFileTest {
+    private static final int COUNT_OFFSET = 24;     /* 文件头中 count 的位置 */
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File writeRoute(boolean isWithExtra) throws IOException {
+        int count = 100;
+        double[] lng = new double[count];
+        double[] lat = new double[count];
+        for (int i = 0; i < count; i++) {
+            lng[i] = 116.404 + i * 1e-4;
+            lat[i] = 39.915 - i * 3e-5;
+        }
+        RouteFile route = new RouteFile(lng, lat);
+        route.isLoop = true;
+        route.moveSpeed = 3.5;
+        route.timestamp = 1700000000L;
+        if (isWithExtra) {
+            route.speed = new float[count];
+            route.dwell = new int[count];
+            for (int i = 0; i < count; i++) {
+                route.speed[i] = i * 0.5f;
+                route.dwell[i] = i * 1000;
+            }
+        }
+        File file = mFolder.newFile();
+        route.write(file);
+        return file;
+    }
+
+    @Test
+    public void roundTripKeepsPointsAndFlags() throws IOException {
+        File file = writeRoute(true);
+        assertTrue(RouteFile.isBinary(file));
+
+        RouteFile route = RouteFile.read(file);
+        assertEquals(100, route.size());
+        assertTrue(route.isLoop);
+        assertEquals(3.5, route.moveSpeed, 0);
+        assertEquals(1700000000L, route.timestamp);
+        for (int i = 0; i < route.size(); i++) {
+            // 坐标以 1e-7 度定点数保存
+            assertEquals(116.404 + i * 1e-4, route.lng[i], 1e-7);
+            assertEquals(39.915 - i * 3e-5, route.lat[i], 1e-7);
+            assertEquals(i * 0.5f, route.speed[i], 0);
+            assertEquals(i * 1000, route.dwell[i]);
+        }
+
+        RouteFile plain = RouteFile.read(writeRoute(false));
+        assertNull(plain.speed);
+        assertNull(plain.dwell);
+    }
+
+    @Test
+    public void flippedByteFailsChecksum() throws IOException {
+        File file = writeRoute(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long pos = raf.length() - 20;
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0x01);
+        }
+
+        try {
+            RouteFile.read(file);
+            fail();
+        } catch (IOException e) {
+            assertEquals("Route file checksum mismatch", e.getMessage());
+        }
+    }
+
+    @Test
+    public void oversizedCountIsRejectedBeforeAllocation() throws IOException {
+        File file = writeRoute(false);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(COUNT_OFFSET);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        try {
+            RouteFile.read(file);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Invalid point count"));
+        }
+    }
+
+    @Test
+    public void truncatedFileIsRejected() throws IOException {
+        File file = writeRoute(true);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+
+        try {
+            RouteFile.read(file);
+            fail();
+        } catch (IOException e) {
+            // count 超过剩余字节所能容纳的点数
+            assertTrue(e.getMessage().startsWith("Invalid point count"));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.zcshou.utils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+// JsonReader 属于 Android 框架，使用 Robolectric 运行
+@RunWith(RobolectricTestRunner.class)
+public class RouteImporterTest {
+    private static final double BD_DELTA = 1e-9;
+
+    private static RouteFile importText(String text, String name, double spacing) throws IOException {
+        return RouteImporter.importRoute(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), name, spacing);
+    }
+
+    private static void assertPoint(RouteFile route, int index, double wgsLng, double wgsLat) {
+        double[] bd = new double[2];
+        MapUtils.wgs2bd09Grid(wgsLng, wgsLat, bd);
+        assertEquals(bd[0], route.lng[index], BD_DELTA);
+        assertEquals(bd[1], route.lat[index], BD_DELTA);
+    }
+
+    private static void assertMalformed(String text, String name) {
+        try {
+            importText(text, name, 0);
+            fail();
+        } catch (IOException e) {
+            // 期望的结果
+        }
+    }
+
+    @Test
+    public void gpxReadsTrackAndRoutePointsOnly() throws IOException {
+        String gpx = "<?xml version=\"1.0\"?>\n"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "<wpt lat=\"30.0\" lon=\"120.0\"/>\n"
+                + "<trk><trkseg>\n"
+                + "<trkpt lat=\"39.915\" lon=\"116.404\"><ele>50</ele></trkpt>\n"
+                + "<trkpt lat=\"39.916\" lon=\"116.405\"/>\n"
+                + "</trkseg></trk>\n"
+                + "<rte><rtept lat=\"39.917\" lon=\"116.406\"/></rte>\n"
+                + "</gpx>";
+
+        RouteFile route = importText(gpx, "track.GPX", 0);
+        assertEquals(3, route.size());
+        assertPoint(route, 0, 116.404, 39.915);
+        assertPoint(route, 1, 116.405, 39.916);
+        assertPoint(route, 2, 116.406, 39.917);
+    }
+
+    @Test
+    public void kmlReadsCoordinatesAndGxCoord() throws IOException {
+        String kml = "<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n"
+                + "<Placemark><LineString><coordinates>\n"
+                + "\t116.404,39.915,50 116.405,39.916\n"
+                + "  -1.5e-1,+2.25E1,0\n"
+                + "</coordinates></LineString></Placemark>\n"
+                + "<Placemark><gx:Track>\n"
+                + "<gx:coord>116.406 39.917 12</gx:coord>\n"
+                + "<gx:coord><![CDATA[116.407 ]]>39.918</gx:coord>\n"
+                + "</gx:Track></Placemark>\n"
+                + "</kml>";
+
+        RouteFile route = importText(kml, "track.kml", 0);
+        assertEquals(5, route.size());
+        assertPoint(route, 0, 116.404, 39.915);
+        assertPoint(route, 1, 116.405, 39.916);
+        assertPoint(route, 2, -0.15, 22.5);
+        assertPoint(route, 3, 116.406, 39.917);
+        assertPoint(route, 4, 116.407, 39.918);
+    }
+
+    @Test
+    public void kmlLongLineStringMatchesParseDouble() throws IOException {
+        // 远大于解析器的缓冲区，坐标会在任意位置被分段送入
+        int count = 20000;
+        StringBuilder text = new StringBuilder("<kml><Placemark><LineString><coordinates>");
+        double[] lng = new double[count];
+        double[] lat = new double[count];
+        for (int i = 0; i < count; i++) {
+            String lngText = String.format(Locale.US, "%." + (i % 12 + 1) + "f", 116.0 + i * 1.234567891e-4);
+            String latText = String.format(Locale.US, "%." + (11 - i % 12) + "f", 39.9 + i * 0.987654321e-4);
+            lng[i] = Double.parseDouble(lngText);
+            lat[i] = Double.parseDouble(latText);
+            text.append(lngText).append(',').append(latText).append(",0").append(i % 3 == 0 ? "\n" : " ");
+        }
+        text.append("</coordinates></LineString></Placemark></kml>");
+
+        RouteFile route = importText(text.toString(), "long.kml", 0);
+        assertEquals(count, route.size());
+        for (int i = 0; i < count; i++) {
+            assertPoint(route, i, lng[i], lat[i]);
+        }
+    }
+
+    @Test
+    public void kmlLongDigitsMatchParseDoubleExactly() throws IOException {
+        // 超过 15 位有效数字时整数尾数乘除 10 的幂不再只有一次舍入，结果必须与 Double.parseDouble 完全一致
+        int count = 2000;
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder("<kml><Placemark><LineString><coordinates>");
+        double[] lng = new double[count];
+        double[] lat = new double[count];
+        for (int i = 0; i < count; i++) {
+            String lngText = "116." + (Math.abs(random.nextLong()) % 1000000000000000000L);
+            String latText = "-0.0" + (Math.abs(random.nextLong()) % 100000000000000000L) + "e3";
+            lng[i] = Double.parseDouble(lngText);
+            lat[i] = Double.parseDouble(latText);
+            text.append(lngText).append(',').append(latText).append(' ');
+        }
+        text.append("</coordinates></LineString></Placemark></kml>");
+
+        RouteFile route = importText(text.toString(), "digits.kml", 0);
+        assertEquals(count, route.size());
+        double[] bd = new double[2];
+        for (int i = 0; i < count; i++) {
+            MapUtils.wgs2bd09Grid(lng[i], lat[i], bd);
+            assertEquals(bd[0], route.lng[i], 0);
+            assertEquals(bd[1], route.lat[i], 0);
+        }
+    }
+
+    @Test
+    public void geoJsonReadsNestedCoordinatesAndSkipsProperties() throws IOException {
+        String json = "{\"type\":\"FeatureCollection\",\"features\":["
+                + "{\"type\":\"Feature\",\"properties\":{\"coordinates\":[1,2]},"
+                + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[116.404,39.915,50],[116.405,39.916]]}},"
+                + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"MultiLineString\","
+                + "\"coordinates\":[[[116.406,39.917]],[[116.407,39.918]]]}}"
+                + "]}";
+
+        RouteFile route = importText(json, "track.geojson", 0);
+        assertEquals(4, route.size());
+        assertPoint(route, 0, 116.404, 39.915);
+        assertPoint(route, 1, 116.405, 39.916);
+        assertPoint(route, 2, 116.406, 39.917);
+        assertPoint(route, 3, 116.407, 39.918);
+    }
+
+    @Test
+    public void spacingDropsClosePointsAndKeepsEnd() throws IOException {
+        // 沿经线每步约 1.1 m，间距 5 m 时每 5 步保留一个点
+        StringBuilder json = new StringBuilder("{\"type\":\"LineString\",\"coordinates\":[");
+        int count = 23;
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append('[').append(116.404).append(',').append(39.9 + i * 1e-5).append(']');
+        }
+        json.append("]}");
+
+        RouteFile route = importText(json.toString(), "track.json", 5.0);
+        int kept = 0;
+        for (int i = 0; i < count; i += 5) {
+            assertPoint(route, kept++, 116.404, 39.9 + i * 1e-5);
+        }
+        // 最后一个被丢弃的点作为终点补上
+        assertEquals(kept + 1, route.size());
+        assertPoint(route, kept, 116.404, 39.9 + (count - 1) * 1e-5);
+    }
+
+    @Test
+    public void malformedInputIsReported() {
+        assertMalformed("<kml><coordinates>116.404,abc</coordinates></kml>", "bad.kml");
+        assertMalformed("<kml><coordinates>116.404,39.915 116.405</coordinates></kml>", "bad.kml");
+        assertMalformed("<kml><coordinates>1.2.3,39.915</coordinates></kml>", "bad.kml");
+        assertMalformed("<gpx><trk><trkseg><trkpt lat=\"39.9\" lon=\"116.4\">", "bad.gpx");
+        assertMalformed("<gpx><trkpt lat=\"north\" lon=\"116.4\"/></gpx>", "bad.gpx");
+        assertMalformed("{\"type\":\"LineString\",\"coordinates\":[[116.404,", "bad.geojson");
+        assertMalformed("116.404,39.915", "track.csv");
+    }
+}
@@ -0,0 +1,58 @@
+package com.zcshou.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路径播放每次更新位置的开销，以及编译整条路径的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompiledRouteBenchmark {
+    @Param({"100", "50000"})
+    public int points;
+
+    private double[] mLng;
+    private double[] mLat;
+    private CompiledRoute mRoute;
+    private final double[] mOut = new double[2];
+    private double mDistance;
+
+    @Setup
+    public void setup() {
+        mLng = new double[points];
+        mLat = new double[points];
+        for (int i = 0; i < points; i++) {
+            mLng[i] = 116.0 + i * 1e-5;
+            mLat[i] = 40.0 + 0.01 * Math.sin(i / 500.0);
+        }
+        mRoute = new CompiledRoute(mLng, mLat, true);
+    }
+
+    @Benchmark
+    public double[] positionAt() {
+        mDistance += 1.37;
+        mRoute.positionAt(mDistance, mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public CompiledRoute compile() {
+        return new CompiledRoute(mLng, mLat, true);
+    }
+}
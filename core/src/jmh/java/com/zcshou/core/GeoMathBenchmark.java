@@ -0,0 +1,193 @@
+package com.zcshou.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 坐标转换与距离计算的基准测试，运行方式：./gradlew :core:jmh
+ * 结果与 core/src/jmh/baseline.txt 对比，-prof gc 给出每次调用的分配量
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeoMathBenchmark {
+    private static final int BATCH_SIZE = 1024;
+
+    private double[] mLng;
+    private double[] mLat;
+    private final double[] mOutLng = new double[BATCH_SIZE];
+    private final double[] mOutLat = new double[BATCH_SIZE];
+    private final double[] mOut = new double[2];
+    private int mIndex;
+
+    @Setup
+    public void setup() {
+        // 固定种子，保证每次运行的数据相同
+        Random random = new Random(20240101);
+        mLng = new double[BATCH_SIZE];
+        mLat = new double[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            mLng[i] = 73.0 + random.nextDouble() * 62.0;
+            mLat[i] = 18.0 + random.nextDouble() * 35.0;
+        }
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) & (BATCH_SIZE - 1);
+        return mIndex;
+    }
+
+    @Benchmark
+    public double[] bd2wgs() {
+        int i = next();
+        return GeoMath.bd2wgs(mLng[i], mLat[i]);
+    }
+
+    @Benchmark
+    public double[] wgs2bd09() {
+        int i = next();
+        return GeoMath.wgs2bd09(mLng[i], mLat[i]);
+    }
+
+    @Benchmark
+    public double[] bd09togcj02() {
+        int i = next();
+        return GeoMath.bd09togcj02(mLng[i], mLat[i]);
+    }
+
+    @Benchmark
+    public double[] gcj02towgs84() {
+        int i = next();
+        return GeoMath.gcj02towgs84(mLng[i], mLat[i]);
+    }
+
+    // 迭代精确反算，与上面的一次近似对比，按调用处的精度需求选择
+    @Benchmark
+    public double[] gcj02towgs84Exact() {
+        int i = next();
+        GeoMath.gcj02towgs84Exact(mLng[i], mLat[i], mOut, GeoMath.INVERSE_TOLERANCE, GeoMath.INVERSE_MAX_ITERATIONS);
+        return mOut;
+    }
+
+    @Benchmark
+    public double[] bd2wgsExact() {
+        int i = next();
+        GeoMath.bd2wgsExact(mLng[i], mLat[i], mOut, GeoMath.INVERSE_TOLERANCE, GeoMath.INVERSE_MAX_ITERATIONS);
+        return mOut;
+    }
+
+    // 偏移量网格插值，分块在预热阶段就已计算完
+    @Benchmark
+    public double[] wgs84togcj02Grid() {
+        int i = next();
+        GcjOffsetGrid.wgs84togcj02(mLng[i], mLat[i], mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public double[] wgs84togcj02() {
+        int i = next();
+        GeoMath.wgs84togcj02(mLng[i], mLat[i], mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public double[] bd2wgsGrid() {
+        int i = next();
+        GcjOffsetGrid.bd2wgs(mLng[i], mLat[i], mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public double[] wgs2bd09Grid() {
+        int i = next();
+        GcjOffsetGrid.wgs2bd09(mLng[i], mLat[i], mOut);
+        return mOut;
+    }
+
+    @Benchmark
+    public double transformLat() {
+        int i = next();
+        return GeoMath.transformLat(mLng[i] - 105.0, mLat[i] - 35.0);
+    }
+
+    @Benchmark
+    public double transformLon() {
+        int i = next();
+        return GeoMath.transformLon(mLng[i] - 105.0, mLat[i] - 35.0);
+    }
+
+    // 共享正弦项的内核，一次得到纬度和经度偏移，对比上面两项之和
+    @Benchmark
+    public double[] transformShared() {
+        int i = next();
+        GeoMath.transform(mLng[i] - 105.0, mLat[i] - 35.0, mOut);
+        return mOut;
+    }
+
+    // 批量转换：逐点调用标量方法，单位为整批耗时
+    @Benchmark
+    public void bd2wgsBatch(Blackhole bh) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(GeoMath.bd2wgs(mLng[i], mLat[i]));
+        }
+    }
+
+    @Benchmark
+    public void wgs2bd09Batch(Blackhole bh) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bh.consume(GeoMath.wgs2bd09(mLng[i], mLat[i]));
+        }
+    }
+
+    // 批量接口：写入调用方提供的数组，整批只分配一个临时缓冲区
+    @Benchmark
+    public double[] bd2wgsBatchApi() {
+        GeoMath.bd2wgs(mLng, mLat, mOutLng, mOutLat, BATCH_SIZE);
+        return mOutLng;
+    }
+
+    @Benchmark
+    public double[] wgs2bd09BatchApi() {
+        GeoMath.wgs2bd09(mLng, mLat, mOutLng, mOutLat, BATCH_SIZE);
+        return mOutLng;
+    }
+
+    @Benchmark
+    public double[] bd2wgsGridBatchApi() {
+        GcjOffsetGrid.bd2wgs(mLng, mLat, mOutLng, mOutLat, BATCH_SIZE);
+        return mOutLng;
+    }
+
+    @Benchmark
+    public double distanceHaversine() {
+        int i = next();
+        int j = (i + 1) & (BATCH_SIZE - 1);
+        return GeoMath.getDistance(mLng[i], mLat[i], mLng[j], mLat[j]);
+    }
+
+    // 等距圆柱近似，作为对比参考
+    @Benchmark
+    public double distanceEquirectangular() {
+        int i = next();
+        int j = (i + 1) & (BATCH_SIZE - 1);
+        double x = Math.toRadians(mLng[j] - mLng[i]) * Math.cos(Math.toRadians((mLat[i] + mLat[j]) / 2));
+        double y = Math.toRadians(mLat[j] - mLat[i]);
+        return Math.sqrt(x * x + y * y) * GeoMath.EARTH_RADIUS;
+    }
+}
@@ -0,0 +1,128 @@
+package com.zcshou.core;
+
+/**
+ * 编译后的路径：WGS-84 坐标、各路段长度和累计距离都保存在基本类型数组中，
+ * 播放时按距离查找位置只需一次二分查找，不分配任何对象
+ */
+public final class CompiledRoute {
+    private final double[] mLng;
+    private final double[] mLat;
+    private final double[] mSegLength;  /* 第 i 段的长度，单位 m */
+    private final double[] mCumDist;    /* 第 i 段起点对应的累计距离，长度为路段数 + 1 */
+    private final boolean isLoop;
+
+    /**
+     * @param wgsLng WGS-84 经度
+     * @param wgsLat WGS-84 纬度
+     * @param loop   闭合模式下额外包含最后一点回到起点的路段
+     */
+    public CompiledRoute(double[] wgsLng, double[] wgsLat, boolean loop) {
+        if (wgsLng.length != wgsLat.length || wgsLng.length < 2) {
+            throw new IllegalArgumentException("A route needs at least two points");
+        }
+
+        int size = wgsLng.length;
+        int segCount = loop ? size : size - 1;
+
+        mLng = wgsLng;
+        mLat = wgsLat;
+        mSegLength = new double[segCount];
+        mCumDist = new double[segCount + 1];
+        isLoop = loop;
+
+        for (int i = 0; i < segCount; i++) {
+            int next = (i + 1) % size;
+            mSegLength[i] = GeoMath.getDistance(mLng[i], mLat[i], mLng[next], mLat[next]);
+            mCumDist[i + 1] = mCumDist[i] + mSegLength[i];
+        }
+    }
+
+    public int getPointCount() {
+        return mLng.length;
+    }
+
+    public int getSegmentCount() {
+        return mSegLength.length;
+    }
+
+    public double getTotalLength() {
+        return mCumDist[mSegLength.length];
+    }
+
+    public boolean isLoop() {
+        return isLoop;
+    }
+
+    /**
+     * 非闭合模式下距离超过总长即为走完全程；闭合模式永远不会结束
+     */
+    public boolean isFinished(double distance) {
+        return !isLoop && distance >= getTotalLength();
+    }
+
+    /**
+     * 查找包含 distance 的路段序号，距离先按闭合/非闭合模式归一化
+     */
+    public int segmentAt(double distance) {
+        return search(normalize(distance));
+    }
+
+    /**
+     * 计算走过 distance 米后的位置，在路段内沿大圆插值，与 GeoMath.getDistance 使用同一模型
+     * @param out 长度至少为 2，依次写入经度、纬度
+     */
+    public void positionAt(double distance, double[] out) {
+        double d = normalize(distance);
+        int seg = search(d);
+        int next = (seg + 1) % mLng.length;
+
+        double len = mSegLength[seg];
+        double progress = len > 0 ? (d - mCumDist[seg]) / len : 1.0;
+        if (progress > 1.0) {
+            progress = 1.0;
+        } else if (progress < 0.0) {
+            progress = 0.0;
+        }
+
+        GeoMath.interpolate(mLng[seg], mLat[seg], mLng[next], mLat[next], progress, out);
+    }
+
+    /**
+     * 走过 distance 米时所在路段的方位角，以正北为 0 顺时针，单位 度
+     * 路段一般很短，取路段起点处的方位角
+     */
+    public double bearingAt(double distance) {
+        int seg = search(normalize(distance));
+        int next = (seg + 1) % mLng.length;
+        return GeoMath.getBearing(mLng[seg], mLat[seg], mLng[next], mLat[next]);
+    }
+
+    private double normalize(double distance) {
+        double total = getTotalLength();
+
+        if (distance <= 0 || total <= 0) {
+            return 0;
+        }
+        if (distance < total) {
+            return distance;
+        }
+        return isLoop ? distance % total : total;
+    }
+
+    // 返回满足 mCumDist[i] <= d 的最大 i，结果限制在 [0, 路段数 - 1]
+    private int search(double d) {
+        int lo = 0;
+        int hi = mSegLength.length - 1;
+
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (mCumDist[mid] <= d) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return lo;
+    }
+}
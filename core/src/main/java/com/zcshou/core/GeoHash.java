@@ -0,0 +1,116 @@
+package com.zcshou.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Geohash 编码：经纬度交替二分得到的 base32 字符串，前缀相同的点位于同一个网格中
+ * <p>
+ * 数据库中按 geohash 建普通索引，查询附近的点时先用 {@link #cover} 得到覆盖查询范围的几个网格前缀，
+ * 每个前缀对应索引上的一段连续区间 [prefix, prefix + {@link #PREFIX_END})，
+ * 取出候选记录后再用 {@link GeoMath#getDistance} 精确过滤和排序，不需要扫描整张表。
+ */
+public final class GeoHash {
+    public final static int MAX_PRECISION = 12;         /* 12 位约 3.7 cm × 1.9 cm */
+    public final static char PREFIX_END = '~';          /* 大于所有 base32 字符，用作前缀区间的上界 */
+    public final static int MAX_CELLS = 9;              /* cover 返回的网格数上限 */
+
+    private final static char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeoHash() {
+    }
+
+    public static String encode(double lng, double lat, int precision) {
+        double minLng = -180, maxLng = 180;
+        double minLat = -90, maxLat = 90;
+        char[] hash = new char[precision];
+        boolean isLng = true;
+
+        for (int i = 0; i < precision; i++) {
+            int ch = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                ch <<= 1;
+                if (isLng) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (lng >= mid) {
+                        ch |= 1;
+                        minLng = mid;
+                    } else {
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (lat >= mid) {
+                        ch |= 1;
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                isLng = !isLng;
+            }
+            hash[i] = BASE32[ch];
+        }
+        return new String(hash);
+    }
+
+    // 给定位数下一个网格的经度跨度，单位 度
+    public static double cellWidth(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    // 给定位数下一个网格的纬度跨度，单位 度
+    public static double cellHeight(int precision) {
+        return 180.0 / (1L << (5 * precision / 2));
+    }
+
+    /**
+     * 覆盖以 (lng, lat) 为中心、radius 米为半径的圆的网格前缀
+     * <p>
+     * 选择网格数不超过 {@link #MAX_CELLS} 的最大位数；范围过大时返回只含空串的列表，表示不限制
+     */
+    public static List<String> cover(double lng, double lat, double radius) {
+        List<String> cells = new ArrayList<>();
+        double dLat = Math.toDegrees(radius / GeoMath.EARTH_RADIUS);
+        double minLat = lat - dLat;
+        double maxLat = lat + dLat;
+        double cosLat = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        // 接近极点或范围超过半圈时经度方向不做限制
+        if (minLat <= -90 || maxLat >= 90 || dLat >= 90 || dLat >= 180 * cosLat) {
+            cells.add("");
+            return cells;
+        }
+        double dLng = dLat / cosLat;
+        double minLng = lng - dLng;
+        double maxLng = lng + dLng;
+
+        for (int precision = MAX_PRECISION; precision > 0; precision--) {
+            double w = cellWidth(precision);
+            double h = cellHeight(precision);
+            long col0 = (long) Math.floor((minLng + 180) / w);
+            long col1 = (long) Math.floor((maxLng + 180) / w);
+            long row0 = (long) Math.floor((minLat + 90) / h);
+            long row1 = (long) Math.floor((maxLat + 90) / h);
+            if ((col1 - col0 + 1) * (row1 - row0 + 1) > MAX_CELLS) {
+                continue;
+            }
+
+            for (long row = row0; row <= row1; row++) {
+                double cellLat = -90 + (row + 0.5) * h;
+                for (long col = col0; col <= col1; col++) {
+                    // 跨越 ±180° 时回绕到另一侧
+                    double cellLng = -180 + (col + 0.5) * w;
+                    cellLng = cellLng - 360 * Math.floor((cellLng + 180) / 360);
+                    String cell = encode(cellLng, cellLat, precision);
+                    if (!cells.contains(cell)) {
+                        cells.add(cell);
+                    }
+                }
+            }
+            return cells;
+        }
+
+        cells.add("");
+        return cells;
+    }
+}
@@ -0,0 +1,113 @@
+package com.zcshou.core;
+
+/**
+ * 路线显示用的 Douglas-Peucker 抽稀，只影响地图绘制，播放仍使用完整的路径点
+ */
+public final class RouteSimplifier {
+    public static final int MIN_ZOOM = 3;
+    public static final int MAX_ZOOM = 21;
+    private static final double SIMPLIFY_PIXELS = 1.5;          /* 允许的偏差，单位 像素 */
+    private static final double METERS_PER_PIXEL_Z0 = 156543.03392;   /* 0 级时赤道处每像素对应的米数 */
+
+    private RouteSimplifier() {
+    }
+
+    /**
+     * 将缩放级别归入整数档位，同一档位共用一份抽稀结果
+     */
+    public static int zoomBand(float zoom) {
+        return Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, (int) zoom));
+    }
+
+    /**
+     * 计算某档位下允许的偏差，单位 m
+     */
+    public static double toleranceForBand(int band, double lat) {
+        return SIMPLIFY_PIXELS * METERS_PER_PIXEL_Z0 * Math.cos(Math.toRadians(lat)) / (1 << band);
+    }
+
+    /**
+     * @param lng       经度
+     * @param lat       纬度
+     * @param count     参与抽稀的点数，取数组前 count 个点
+     * @param tolerance 允许的偏差，单位 m
+     * @return 保留下来的点序号，按升序排列，始终包含首尾两点
+     */
+    public static int[] simplify(double[] lng, double[] lat, int count, double tolerance) {
+        if (count <= 2) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        // 在路线附近按等距圆柱投影换算成米，范围很小时误差可以忽略
+        double kx = 111320.0 * Math.cos(Math.toRadians(lat[0]));
+        double ky = 110574.0;
+        double tol2 = tolerance * tolerance;
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+
+        // 用显式栈代替递归，避免长路线时栈溢出
+        int[] stack = new int[count * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+
+            double ax = lng[first] * kx;
+            double ay = lat[first] * ky;
+            double dx = lng[last] * kx - ax;
+            double dy = lat[last] * ky - ay;
+            double len2 = dx * dx + dy * dy;
+
+            double maxDist2 = tol2;
+            int index = -1;
+
+            for (int i = first + 1; i < last; i++) {
+                double px = lng[i] * kx - ax;
+                double py = lat[i] * ky - ay;
+                double dist2;
+
+                if (len2 == 0) {
+                    dist2 = px * px + py * py;
+                } else {
+                    double t = (px * dx + py * dy) / len2;
+                    t = Math.max(0, Math.min(1, t));
+                    double ex = px - t * dx;
+                    double ey = py - t * dy;
+                    dist2 = ex * ex + ey * ey;
+                }
+
+                if (dist2 > maxDist2) {
+                    maxDist2 = dist2;
+                    index = i;
+                }
+            }
+
+            if (index >= 0) {
+                keep[index] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+
+        int[] result = new int[kept];
+        for (int i = 0, j = 0; i < count; i++) {
+            if (keep[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+}
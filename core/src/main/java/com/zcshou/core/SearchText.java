@@ -0,0 +1,94 @@
+package com.zcshou.core;
+
+/**
+ * 历史记录全文检索用的分词
+ * <p>
+ * SQLite FTS4 的 simple 分词器只按 ASCII 标点和空白切分，连续的汉字会成为一个词，
+ * 只能匹配整段地址的前缀。这里在写入前先把文本切成以空格分隔的词：汉字、假名、谚文每个字单独成词，
+ * 连续的字母、连续的数字分别成词，字母转为小写，其余字符视为分隔符。
+ * 查询时按同样的规则切分，连续的字组成短语、最后一个词做前缀匹配，
+ * 因此 "朝阳" 能匹配 "北京市朝阳区"，"wang" 能匹配 "Wangfujing"。
+ */
+public final class SearchText {
+    private SearchText() {
+    }
+
+    /**
+     * 写入 FTS 表的文本
+     */
+    public static String index(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length() * 2);
+        appendTokens(sb, text);
+        return sb.toString();
+    }
+
+    /**
+     * 生成 MATCH 表达式，没有可查询的词时返回 null
+     * <p>
+     * 输入中以空白分隔的每一段生成一个短语，各短语之间为 AND
+     */
+    public static String match(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(query.length() * 2 + 8);
+        StringBuilder phrase = new StringBuilder();
+        for (String part : query.trim().split("\\s+")) {
+            phrase.setLength(0);
+            appendTokens(phrase, part);
+            if (phrase.length() == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            // 词中只有字母、数字和单个汉字，不会含有引号
+            sb.append('"').append(phrase).append("*\"");
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static void appendTokens(StringBuilder sb, String text) {
+        int wordType = 0;       /* 0 不在词中，1 字母，2 数字 */
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+
+            int type = 0;
+            if (isSingleCharToken(cp)) {
+                separate(sb);
+                sb.appendCodePoint(cp);
+            } else if (Character.isDigit(cp)) {
+                type = 2;
+            } else if (Character.isLetter(cp)) {
+                type = 1;
+            }
+
+            if (type != 0) {
+                // "Road12" 切分为 "road 12"，门牌号可以单独查询
+                if (type != wordType) {
+                    separate(sb);
+                }
+                sb.appendCodePoint(Character.toLowerCase(cp));
+            }
+            wordType = type;
+        }
+    }
+
+    private static void separate(StringBuilder sb) {
+        if (sb.length() > 0) {
+            sb.append(' ');
+        }
+    }
+
+    private static boolean isSingleCharToken(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
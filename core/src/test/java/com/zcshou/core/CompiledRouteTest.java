@@ -0,0 +1,128 @@
+package com.zcshou.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompiledRouteTest {
+    private static final double[] LNG = {116.0, 116.001, 116.001};
+    private static final double[] LAT = {40.0, 40.0, 40.001};
+
+    @Test
+    public void cumulativeLengthMatchesSegments() {
+        CompiledRoute route = new CompiledRoute(LNG, LAT, false);
+        double first = GeoMath.getDistance(LNG[0], LAT[0], LNG[1], LAT[1]);
+        double second = GeoMath.getDistance(LNG[1], LAT[1], LNG[2], LAT[2]);
+
+        assertEquals(2, route.getSegmentCount());
+        assertEquals(first + second, route.getTotalLength(), 1e-9);
+        assertEquals(0, route.segmentAt(first - 0.01));
+        assertEquals(1, route.segmentAt(first + 0.01));
+    }
+
+    @Test
+    public void positionInterpolatesAndClampsAtEnd() {
+        CompiledRoute route = new CompiledRoute(LNG, LAT, false);
+        double first = GeoMath.getDistance(LNG[0], LAT[0], LNG[1], LAT[1]);
+        double[] out = new double[2];
+
+        // 大圆在两点之间略向极地方向凸出，约 1e-9°
+        route.positionAt(first / 2, out);
+        assertEquals(116.0005, out[0], 1e-9);
+        assertEquals(40.0, out[1], 1e-8);
+
+        route.positionAt(route.getTotalLength() + 100, out);
+        assertEquals(LNG[2], out[0], 1e-12);
+        assertEquals(LAT[2], out[1], 1e-12);
+        assertTrue(route.isFinished(route.getTotalLength()));
+    }
+
+    @Test
+    public void loopWrapsBackToStart() {
+        CompiledRoute route = new CompiledRoute(LNG, LAT, true);
+        double[] out = new double[2];
+
+        assertEquals(3, route.getSegmentCount());
+        assertFalse(route.isFinished(route.getTotalLength() * 10));
+
+        route.positionAt(route.getTotalLength() * 3, out);
+        assertEquals(LNG[0], out[0], 1e-9);
+        assertEquals(LAT[0], out[1], 1e-9);
+    }
+
+    /**
+     * 按固定节拍播放长路线，每次位移（跨越路段时沿折线累加）与 速度 × 节拍 相差不超过 0.1%
+     */
+    @Test
+    public void displacementPerTickMatchesSpeed() {
+        Random random = new Random(17);
+        int n = 2000;
+        double[] lng = new double[n];
+        double[] lat = new double[n];
+        lng[0] = 87.6;
+        lat[0] = 43.8;      // 从乌鲁木齐出发，高纬度上经纬度的线性插值误差更明显
+        for (int i = 1; i < n; i++) {
+            double[] next = new double[2];
+            GeoMath.offset(lng[i - 1], lat[i - 1], random.nextDouble() * 360.0, 20.0 + random.nextDouble() * 2000.0, next);
+            lng[i] = next[0];
+            lat[i] = next[1];
+        }
+
+        CompiledRoute route = new CompiledRoute(lng, lat, false);
+        double speed = 1.2;         /* m/s，与摇杆默认步行速度一致 */
+        double tick = 0.1;          /* s，与 RouteManager.ROUTE_TICK 一致 */
+        double step = speed * tick * 1000;  // 加快测试：每次相当于 1000 个节拍的距离
+        double[] prev = new double[2];
+        double[] cur = new double[2];
+        route.positionAt(0, prev);
+
+        for (double d = step; d < route.getTotalLength(); d += step) {
+            route.positionAt(d, cur);
+            double moved = pathDistance(route, lng, lat, d - step, d, prev, cur);
+            assertEquals(step, moved, step * 1e-3);
+            prev[0] = cur[0];
+            prev[1] = cur[1];
+        }
+
+        // 单个节拍的小位移
+        for (double d = 1000.0; d < 1000.0 + 1000 * speed * tick; d += speed * tick) {
+            route.positionAt(d, prev);
+            route.positionAt(d + speed * tick, cur);
+            double moved = pathDistance(route, lng, lat, d, d + speed * tick, prev, cur);
+            assertEquals(speed * tick, moved, speed * tick * 1e-3);
+        }
+    }
+
+    // from、to 之间经过的路径长度：同一路段内是两点距离，跨越路段时经过中间的路径点
+    private static double pathDistance(CompiledRoute route, double[] lng, double[] lat,
+                                       double from, double to, double[] fromPos, double[] toPos) {
+        int first = route.segmentAt(from);
+        int last = route.segmentAt(to);
+        if (first == last) {
+            return GeoMath.getDistance(fromPos[0], fromPos[1], toPos[0], toPos[1]);
+        }
+
+        double sum = GeoMath.getDistance(fromPos[0], fromPos[1], lng[first + 1], lat[first + 1]);
+        for (int i = first + 1; i < last; i++) {
+            sum += GeoMath.getDistance(lng[i], lat[i], lng[i + 1], lat[i + 1]);
+        }
+        return sum + GeoMath.getDistance(lng[last], lat[last], toPos[0], toPos[1]);
+    }
+
+    @Test
+    public void simplifyKeepsEndpointsAndDropsCollinearPoints() {
+        int n = 1000;
+        double[] lng = new double[n];
+        double[] lat = new double[n];
+        for (int i = 0; i < n; i++) {
+            lng[i] = 116.0 + i * 1e-5;
+            lat[i] = 40.0;
+        }
+        lat[500] = 40.01;
+
+        int[] kept = RouteSimplifier.simplify(lng, lat, n, 1.0);
+        assertArrayEquals(new int[] {0, 499, 500, 501, n - 1}, kept);
+    }
+}
@@ -0,0 +1,116 @@
+package com.zcshou.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GcjOffsetGridTest {
+    private static final int AREAS = 200;
+    private static final int POINTS_PER_AREA = 500;
+
+    @Test
+    public void interpolationStaysWithinMaxError() {
+        Random random = new Random(11);
+        double[] grid = new double[2];
+        double[] exact = new double[2];
+
+        // 在整个覆盖范围内随机选取若干 0.5° 见方的区域，避免计算全部分块
+        double areaLng = 0;
+        double areaLat = 0;
+        for (int i = 0; i < AREAS * POINTS_PER_AREA; i++) {
+            if (i % POINTS_PER_AREA == 0) {
+                areaLng = 72.0 + random.nextDouble() * 65.5;
+                areaLat = random.nextDouble() * 55.5;
+            }
+            double lng = areaLng + random.nextDouble() * 0.5;
+            double lat = areaLat + random.nextDouble() * 0.5;
+
+            GcjOffsetGrid.wgs84togcj02(lng, lat, grid);
+            GeoMath.wgs84togcj02(lng, lat, exact);
+            assertEquals(exact[0], grid[0], GcjOffsetGrid.MAX_ERROR);
+            assertEquals(exact[1], grid[1], GcjOffsetGrid.MAX_ERROR);
+
+            GcjOffsetGrid.gcj02towgs84(lng, lat, grid);
+            GeoMath.gcj02towgs84Exact(lng, lat, exact, GeoMath.INVERSE_TOLERANCE, GeoMath.INVERSE_MAX_ITERATIONS);
+            assertEquals(exact[0], grid[0], GcjOffsetGrid.MAX_ERROR);
+            assertEquals(exact[1], grid[1], GcjOffsetGrid.MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void bd09ConversionsOnlyReplaceTheGcjStep() {
+        Random random = new Random(13);
+        double[] grid = new double[2];
+        double[] exact = new double[2];
+
+        double areaLng = 0;
+        double areaLat = 0;
+        for (int i = 0; i < AREAS * POINTS_PER_AREA; i++) {
+            if (i % POINTS_PER_AREA == 0) {
+                areaLng = 73.0 + random.nextDouble() * 61.5;
+                areaLat = 18.0 + random.nextDouble() * 34.5;
+            }
+            double lng = areaLng + random.nextDouble() * 0.5;
+            double lat = areaLat + random.nextDouble() * 0.5;
+
+            // BD-09 一步仍是解析公式，误差只来自 GCJ-02 一步的插值
+            GcjOffsetGrid.bd2wgs(lng, lat, grid);
+            GeoMath.bd09togcj02(lng, lat, exact);
+            GeoMath.gcj02towgs84Exact(exact[0], exact[1], exact, GeoMath.INVERSE_TOLERANCE, GeoMath.INVERSE_MAX_ITERATIONS);
+            assertEquals(exact[0], grid[0], GcjOffsetGrid.MAX_ERROR);
+            assertEquals(exact[1], grid[1], GcjOffsetGrid.MAX_ERROR);
+
+            // gcj02tobd09 的导数接近 1，误差基本不放大
+            GcjOffsetGrid.wgs2bd09(lng, lat, grid);
+            GeoMath.wgs2bd09(lng, lat, exact);
+            assertEquals(exact[0], grid[0], 1.01 * GcjOffsetGrid.MAX_ERROR);
+            assertEquals(exact[1], grid[1], 1.01 * GcjOffsetGrid.MAX_ERROR);
+        }
+    }
+
+    @Test
+    public void tileCacheIsCappedAndKeepsRecentlyUsedTiles() {
+        GcjOffsetGrid cache = new GcjOffsetGrid(false);
+        double[] grid = new double[2];
+        double[] exact = new double[2];
+        // 常用的一块，每加入一块新的之前都查询一次
+        double hotLng = 116.40;
+        double hotLat = 39.90;
+
+        // 沿经度方向逐块移动，每块 0.25°
+        for (int i = 0; i < GcjOffsetGrid.MAX_TILES * 3; i++) {
+            assertTrue(cache.apply(hotLng, hotLat, grid));
+            double lng = 73.1 + (i % 200) * 0.25;
+            double lat = 1.1 + (i / 200) * 0.25;
+            assertTrue(cache.apply(lng, lat, grid));
+            GeoMath.wgs84togcj02(lng, lat, exact);
+            assertEquals(exact[0], grid[0], GcjOffsetGrid.MAX_ERROR);
+            assertEquals(exact[1], grid[1], GcjOffsetGrid.MAX_ERROR);
+            assertTrue(cache.loadedTileCount() <= GcjOffsetGrid.MAX_TILES);
+        }
+
+        assertEquals(GcjOffsetGrid.MAX_TILES, cache.loadedTileCount());
+        assertTrue(cache.isTileLoaded(hotLng, hotLat));
+        // 只查询过一次的第一块已被淘汰，再次查询时重新计算
+        assertFalse(cache.isTileLoaded(73.1, 1.1));
+        assertTrue(cache.apply(73.1, 1.1, grid));
+        GeoMath.wgs84togcj02(73.1, 1.1, exact);
+        assertEquals(exact[0], grid[0], GcjOffsetGrid.MAX_ERROR);
+        assertEquals(GcjOffsetGrid.MAX_TILES, cache.loadedTileCount());
+    }
+
+    @Test
+    public void outsideCoverageFallsBackToAnalytic() {
+        double[] grid = new double[2];
+        double[] exact = new double[2];
+        double[][] points = {{-0.1278, 51.5074}, {151.2093, -33.8688}, {139.6917, 35.6895}, {Double.NaN, 30.0}};
+
+        for (double[] point : points) {
+            GcjOffsetGrid.wgs84togcj02(point[0], point[1], grid);
+            GeoMath.wgs84togcj02(point[0], point[1], exact);
+            assertArrayEquals(exact, grid, 0);
+        }
+    }
+}
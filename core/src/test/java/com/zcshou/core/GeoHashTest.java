@@ -0,0 +1,71 @@
+package com.zcshou.core;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeoHashTest {
+    @Test
+    public void encodeMatchesKnownValues() {
+        assertEquals("wx4g08c2", GeoHash.encode(116.3912, 39.9065, 8));
+        assertEquals("ezs42", GeoHash.encode(-5.6, 42.6, 5));
+        assertEquals("s0000", GeoHash.encode(0, 0, 5));
+    }
+
+    @Test
+    public void cellSizeHalvesAlternately() {
+        assertEquals(45.0, GeoHash.cellWidth(1), 0);
+        assertEquals(45.0, GeoHash.cellHeight(1), 0);
+        assertEquals(11.25, GeoHash.cellWidth(2), 0);
+        assertEquals(5.625, GeoHash.cellHeight(2), 0);
+    }
+
+    @Test
+    public void coverContainsEveryPointWithinRadius() {
+        Random random = new Random(23);
+        double[] out = new double[2];
+
+        for (int i = 0; i < 2000; i++) {
+            double lng = -179.9 + random.nextDouble() * 359.8;
+            double lat = -80 + random.nextDouble() * 160;
+            double radius = Math.pow(10, 1 + random.nextDouble() * 5);   /* 10 m ~ 1000 km */
+            List<String> cells = GeoHash.cover(lng, lat, radius);
+            assertTrue(cells.size() <= GeoHash.MAX_CELLS);
+
+            for (int j = 0; j < 20; j++) {
+                GeoMath.offset(lng, lat, random.nextDouble() * 360, random.nextDouble() * radius, out);
+                String hash = GeoHash.encode(out[0], out[1], GeoHash.MAX_PRECISION);
+                boolean isCovered = false;
+                for (String cell : cells) {
+                    if (hash.startsWith(cell)) {
+                        isCovered = true;
+                        break;
+                    }
+                }
+                assertTrue(lng + "," + lat + " r=" + radius + " -> " + out[0] + "," + out[1], isCovered);
+            }
+        }
+    }
+
+    @Test
+    public void coverCrossesAntimeridian() {
+        List<String> cells = GeoHash.cover(179.9999, 10, 1000);
+        boolean isEast = false;
+        boolean isWest = false;
+        for (String cell : cells) {
+            isEast |= GeoHash.encode(179.9999, 10, cell.length()).equals(cell);
+            isWest |= GeoHash.encode(-179.9999, 10, cell.length()).equals(cell);
+        }
+        assertTrue(isEast && isWest);
+    }
+
+    @Test
+    public void coverFallsBackToEverythingForHugeRadius() {
+        List<String> cells = GeoHash.cover(116, 40, 2.0e7);
+        assertEquals(1, cells.size());
+        assertEquals("", cells.get(0));
+    }
+}
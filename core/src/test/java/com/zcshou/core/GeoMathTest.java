@@ -0,0 +1,193 @@
+package com.zcshou.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GeoMathTest {
+    private static final int COUNT = 10000;
+    private static final double MAX_DEVIATION = 1e-9;   /* 与原实现的最大允许偏差，单位 度 */
+
+    /**
+     * 精度对比：在中国范围 (73°E–135°E, 18°N–54°N) 的网格和随机点上，
+     * 共享正弦项的实现与原实现相差不超过 1e-9°
+     */
+    @Test
+    public void scalarMatchesLegacyAcrossChina() {
+        double max = 0;
+        for (double lng = 73.0; lng <= 135.0; lng += 0.05) {
+            for (double lat = 18.0; lat <= 54.0; lat += 0.05) {
+                max = Math.max(max, deviation(lng, lat));
+            }
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            max = Math.max(max, deviation(73.0 + random.nextDouble() * 62.0, 18.0 + random.nextDouble() * 35.0));
+        }
+
+        assertTrue("max deviation " + max, max <= MAX_DEVIATION);
+    }
+
+    @Test
+    public void bd09togcj02MatchesLegacyBitForBit() {
+        Random random = new Random(42);
+        for (int i = 0; i < COUNT; i++) {
+            double lng = 73.0 + random.nextDouble() * 62.0;
+            double lat = 18.0 + random.nextDouble() * 35.0;
+            assertBitsEqual(Legacy.bd09togcj02(lng, lat), GeoMath.bd09togcj02(lng, lat));
+        }
+    }
+
+    private static double deviation(double lng, double lat) {
+        double max = 0;
+        max = Math.max(max, maxAbsDiff(Legacy.bd2wgs(lng, lat), GeoMath.bd2wgs(lng, lat)));
+        max = Math.max(max, maxAbsDiff(Legacy.wgs2bd09(lng, lat), GeoMath.wgs2bd09(lng, lat)));
+        max = Math.max(max, maxAbsDiff(Legacy.gcj02towgs84(lng, lat), GeoMath.gcj02towgs84(lng, lat)));
+        return max;
+    }
+
+    private static double maxAbsDiff(double[] expected, double[] actual) {
+        return Math.max(Math.abs(expected[0] - actual[0]), Math.abs(expected[1] - actual[1]));
+    }
+
+    @Test
+    public void batchMatchesScalarBitForBit() {
+        Random random = new Random(7);
+        double[] lng = new double[COUNT];
+        double[] lat = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            lng[i] = 73.0 + random.nextDouble() * 62.0;
+            lat[i] = 18.0 + random.nextDouble() * 35.0;
+        }
+
+        double[] outLng = new double[COUNT];
+        double[] outLat = new double[COUNT];
+        GeoMath.bd2wgs(lng, lat, outLng, outLat, COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            assertBitsEqual(GeoMath.bd2wgs(lng[i], lat[i]), new double[] {outLng[i], outLat[i]});
+        }
+
+        GeoMath.wgs2bd09(lng, lat, outLng, outLat, COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            assertBitsEqual(GeoMath.wgs2bd09(lng[i], lat[i]), new double[] {outLng[i], outLat[i]});
+        }
+
+        // 原地转换
+        double[] inLng = lng.clone();
+        double[] inLat = lat.clone();
+        GeoMath.gcj02towgs84(inLng, inLat, inLng, inLat, COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            assertBitsEqual(GeoMath.gcj02towgs84(lng[i], lat[i]), new double[] {inLng[i], inLat[i]});
+        }
+    }
+
+    /**
+     * 摇杆每次的位移用 getDistance 量出来等于给定距离，方位角也一致
+     */
+    @Test
+    public void offsetAgreesWithDistanceAndBearing() {
+        Random random = new Random(19);
+        double[] out = new double[2];
+
+        for (int i = 0; i < COUNT; i++) {
+            double lng = 73.0 + random.nextDouble() * 62.0;
+            double lat = 18.0 + random.nextDouble() * 35.0;
+            double bearing = random.nextDouble() * 360.0;
+            double distance = 0.1 + random.nextDouble() * 100.0;
+
+            GeoMath.offset(lng, lat, bearing, distance, out);
+            assertEquals(distance, GeoMath.getDistance(lng, lat, out[0], out[1]), distance * 1e-3);
+            double diff = Math.abs(GeoMath.getBearing(lng, lat, out[0], out[1]) - bearing);
+            assertEquals(0, Math.min(diff, 360.0 - diff), 1e-3);
+        }
+    }
+
+    private static void assertBitsEqual(double[] expected, double[] actual) {
+        assertEquals(Double.doubleToRawLongBits(expected[0]), Double.doubleToRawLongBits(actual[0]));
+        assertEquals(Double.doubleToRawLongBits(expected[1]), Double.doubleToRawLongBits(actual[1]));
+    }
+
+    // 重构前 MapUtils 的实现，作为逐位比较的参照
+    private static final class Legacy {
+        public final static double pi = 3.14159265358979324;
+        public final static double a = 6378245.0;
+        public final static double ee = 0.00669342162296594323;
+        public final static double x_pi = 3.14159265358979324 * 3000.0 / 180.0;
+
+        public static double[] bd2wgs(double lon, double lat) {
+            double[] bd2Gcj = bd09togcj02(lon, lat);
+            return gcj02towgs84(bd2Gcj[0], bd2Gcj[1]);
+        }
+
+        /**
+         * WGS84 转换为 BD-09
+         * @param lng   经度
+         * @param lat   纬度
+         * @return double[] 转换后的经度，纬度 数组
+         *
+         */
+        public static double[] wgs2bd09(double lng, double lat){
+            //第一次转换
+            double dlat = transformLat(lng - 105.0, lat - 35.0);
+            double dlng = transformLon(lng - 105.0, lat - 35.0);
+            double radlat = lat / 180.0 * pi;
+            double magic = Math.sin(radlat);
+            magic = 1 - ee * magic * magic;
+            double sqrtmagic = Math.sqrt(magic);
+            dlat = (dlat * 180.0) / ((a * (1 - ee)) / (magic * sqrtmagic) * pi);
+            dlng = (dlng * 180.0) / (a / sqrtmagic * Math.cos(radlat) * pi);
+            double mglat = lat + dlat;
+            double mglng = lng + dlng;
+
+            //第二次转换
+            double z = Math.sqrt(mglng * mglng + mglat * mglat) + 0.00002 * Math.sin(mglat * x_pi);
+            double theta = Math.atan2(mglat, mglng) + 0.000003 * Math.cos(mglng * x_pi);
+            double bd_lng = z * Math.cos(theta) + 0.0065;
+            double bd_lat = z * Math.sin(theta) + 0.006;
+            return new double[] { bd_lng, bd_lat };
+        }
+
+        public static double[] bd09togcj02(double bd_lon, double bd_lat) {
+            double x = bd_lon - 0.0065;
+            double y = bd_lat - 0.006;
+            double z = Math.sqrt(x * x + y * y) - 0.00002 * Math.sin(y * x_pi);
+            double theta = Math.atan2(y, x) - 0.000003 * Math.cos(x * x_pi);
+            double gg_lng = z * Math.cos(theta);
+            double gg_lat = z * Math.sin(theta);
+            return new double[] { gg_lng, gg_lat };
+        }
+
+        public static double[] gcj02towgs84(double lng, double lat) {
+            double dlat = transformLat(lng - 105.0, lat - 35.0);
+            double dlng = transformLon(lng - 105.0, lat - 35.0);
+            double radlat = lat / 180.0 * pi;
+            double magic = Math.sin(radlat);
+            magic = 1 - ee * magic * magic;
+            double sqrtmagic = Math.sqrt(magic);
+            dlat = (dlat * 180.0) / ((a * (1 - ee)) / (magic * sqrtmagic) * pi);
+            dlng = (dlng * 180.0) / (a / sqrtmagic * Math.cos(radlat) * pi);
+            double mglat = lat + dlat;
+            double mglng = lng + dlng;
+            return new double[] { lng * 2 - mglng, lat * 2 - mglat };
+        }
+
+        private static double transformLat(double lat, double lon) {
+            double ret = -100.0 + 2.0 * lat + 3.0 * lon + 0.2 * lon * lon + 0.1 * lat * lon + 0.2 * Math.sqrt(Math.abs(lat));
+            ret += (20.0 * Math.sin(6.0 * lat * pi) + 20.0 * Math.sin(2.0 * lat * pi)) * 2.0 / 3.0;
+            ret += (20.0 * Math.sin(lon * pi) + 40.0 * Math.sin(lon / 3.0 * pi)) * 2.0 / 3.0;
+            ret += (160.0 * Math.sin(lon / 12.0 * pi) + 320 * Math.sin(lon * pi  / 30.0)) * 2.0 / 3.0;
+            return ret;
+        }
+
+        private static double transformLon(double lat, double lon) {
+            double ret = 300.0 + lat + 2.0 * lon + 0.1 * lat * lat + 0.1 * lat * lon + 0.1 * Math.sqrt(Math.abs(lat));
+            ret += (20.0 * Math.sin(6.0 * lat * pi) + 20.0 * Math.sin(2.0 * lat * pi)) * 2.0 / 3.0;
+            ret += (20.0 * Math.sin(lat * pi) + 40.0 * Math.sin(lat / 3.0 * pi)) * 2.0 / 3.0;
+            ret += (150.0 * Math.sin(lat / 12.0 * pi) + 300.0 * Math.sin(lat / 30.0 * pi)) * 2.0 / 3.0;
+            return ret;
+        }
+    }
+}
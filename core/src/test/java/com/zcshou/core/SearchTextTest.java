@@ -0,0 +1,36 @@
+package com.zcshou.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SearchTextTest {
+    @Test
+    public void indexSplitsHanCharactersAndWords() {
+        assertEquals("北 京 市 朝 阳 区 wangfujing street 213 号", SearchText.index("北京市朝阳区Wangfujing Street213号"));
+        assertEquals("", SearchText.index(null));
+        assertEquals("", SearchText.index(" ,.-"));
+    }
+
+    @Test
+    public void matchBuildsPrefixPhrases() {
+        assertEquals("\"朝 阳*\"", SearchText.match("朝阳"));
+        assertEquals("\"wang*\"", SearchText.match("Wang"));
+        assertEquals("\"北 京*\" \"建 国*\"", SearchText.match(" 北京  建国 "));
+        assertEquals("\"road 12*\"", SearchText.match("Road12"));
+        assertNull(SearchText.match(" ,. "));
+        assertNull(SearchText.match(null));
+    }
+
+    @Test
+    public void matchIgnoresQuotesAndOperators() {
+        // 引号和 FTS 运算符都不会出现在表达式的词中
+        assertEquals("\"a*\" \"b*\"", SearchText.match("\"a\" -b*"));
+    }
+
+    @Test
+    public void supplementaryCharactersStayWhole() {
+        // 扩展 B 区的汉字占两个 char
+        assertEquals("𠀀 京", SearchText.index("𠀀京"));
+    }
+}